@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times {@code status} on a generated working tree.
+ *
+ * The tree has {@code files} small files, 100 per directory, in directories
+ * nested two levels deep like a source tree. It is added and committed once,
+ * after which {@code status} is run {@code runs} times on a clean tree and
+ * {@code runs} times with 10 files modified, each time on a new
+ * {@link Repository} so the index is loaded from disk as on the command line.
+ * The output of status itself is discarded; the median and best times are printed.
+ * A directory that already holds a repository generated with the same number
+ * of files is reused, so repeated measurements skip the setup.
+ *
+ * Usage: {@code java StatusBenchmark <directory> [files] [runs]},
+ * by default 100,000 files and 10 runs. JVM startup is not included; measure
+ * {@code java Main status} in the generated directory for the end-to-end time.
+ */
+public class StatusBenchmark {
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final int DIRECTORIES_PER_LEVEL = 32;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: StatusBenchmark <directory> [files] [runs]");
+            return;
+        }
+        Path root = Path.of(args[0]).toAbsolutePath().normalize();
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        if (Files.exists(root.resolve(".git"))) {
+            if (!Files.exists(fileAt(root, files - 1)) || Files.exists(fileAt(root, files))) {
+                System.out.println("Not a generated repository of " + files + " files: " + root);
+                return;
+            }
+            System.out.println("Reusing the repository in " + root);
+        } else {
+            long start = System.nanoTime();
+            generate(root, files);
+            System.out.printf("generate %d files: %.0f ms%n", files, millis(start));
+            start = System.nanoTime();
+            quietly(() -> {
+                Repository repo = new Repository(root.toString());
+                repo.init();
+                repo.addFiles(List.of("."));
+                repo.commit("Generated tree", "Benchmark <bench@example.com>");
+            });
+            System.out.printf("init, add and commit: %.0f ms%n", millis(start));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(fileAt(root, i * (files / 10)), content(i * (files / 10)));
+        }
+        report("status, clean tree", time(root, runs));
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(fileAt(root, i * (files / 10)), "modified " + i + "\n");
+        }
+        report("status, 10 files modified", time(root, runs));
+    }
+
+    /**
+     * Writes the generated tree.
+     */
+    private static void generate(Path root, int files) throws IOException {
+        for (int i = 0; i < files; i++) {
+            Path file = fileAt(root, i);
+            if (i % FILES_PER_DIRECTORY == 0) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.writeString(file, content(i));
+        }
+    }
+
+    /**
+     * Returns the path of the i-th generated file.
+     */
+    private static Path fileAt(Path root, int i) {
+        int directory = i / FILES_PER_DIRECTORY;
+        return root.resolve("src").resolve("m" + directory / DIRECTORIES_PER_LEVEL)
+                .resolve("p" + directory % DIRECTORIES_PER_LEVEL).resolve("File" + i + ".java");
+    }
+
+    private static String content(int i) {
+        return "class File" + i + " {\n    int value = " + i + ";\n}\n";
+    }
+
+    /**
+     * Runs status on a new repository object several times.
+     *
+     * @return The time of each run in milliseconds, sorted.
+     */
+    private static double[] time(Path root, int runs) {
+        double[] times = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            quietly(() -> new Repository(root.toString()).status());
+            times[i] = millis(start);
+        }
+        Arrays.sort(times);
+        return times;
+    }
+
+    private static void report(String label, double[] times) {
+        System.out.printf("%s: median %.1f ms, best %.1f ms over %d runs%n",
+                label, times[times.length / 2], times[0], times.length);
+    }
+
+    private static double millis(long start) {
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    /**
+     * Runs an action with standard output discarded.
+     */
+    private static void quietly(Runnable action) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            action.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
@@ -1,10 +1,25 @@
+import diff.DiffAlgorithm;
 import objects.Commit;
 import objects.Object;
+import utils.HashAlgorithm;
+import utils.Trace;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 import static utils.Hasher.computeSHA1;
 
 public class Main {
     public static void main(String[] args) {
+        Trace.startup();
+        long start = Trace.start();
         if (args.length == 0) {
             System.out.println("Please provide a command");
             return;
@@ -16,14 +31,22 @@ public class Main {
         
         switch (command) {
             case "init":
-                repo.init();
+                if (args.length > 1 && args[1].startsWith("--object-format=")) {
+                    try {
+                        repo.init(HashAlgorithm.fromName(args[1].substring("--object-format=".length())));
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(e.getMessage());
+                    }
+                } else {
+                    repo.init();
+                }
                 break;
             case "add":
                 if (args.length < 2) {
                     System.out.println("Please specify a file to add");
                     return;
                 }
-                repo.addFile(args[1]);
+                repo.addFiles(Arrays.asList(args).subList(1, args.length));
                 break;
             case "commit":
                 if (args.length < 3) {
@@ -33,7 +56,98 @@ public class Main {
                 repo.commit(args[1], args[2]);
                 break;
             case "log":
-                repo.log();
+                int maxCount = Integer.MAX_VALUE;
+                Instant since = null;
+                String author = null;
+                String grep = null;
+                String path = null;
+                boolean follow = false;
+                for (int i = 1; i < args.length; i++) {
+                    String arg = args[i];
+                    try {
+                        if (arg.equals("-n") && i + 1 < args.length) {
+                            maxCount = Integer.parseInt(args[++i]);
+                        } else if (arg.matches("-n?\\d+")) {
+                            maxCount = Integer.parseInt(arg.substring(arg.charAt(1) == 'n' ? 2 : 1));
+                        } else if (arg.startsWith("--max-count=")) {
+                            maxCount = Integer.parseInt(arg.substring("--max-count=".length()));
+                        } else if (arg.startsWith("--since=")) {
+                            since = parseDate(arg.substring("--since=".length()));
+                        } else if (arg.startsWith("--author=")) {
+                            author = arg.substring("--author=".length());
+                        } else if (arg.startsWith("--grep=")) {
+                            grep = arg.substring("--grep=".length());
+                        } else if (arg.equals("--follow")) {
+                            follow = true;
+                        } else if (arg.equals("--") && i + 1 < args.length) {
+                            path = args[++i];
+                        } else if (!arg.startsWith("-") && path == null) {
+                            path = arg;
+                        } else {
+                            System.out.println("Unknown log option: " + arg);
+                            return;
+                        }
+                    } catch (NumberFormatException | DateTimeParseException e) {
+                        System.out.println("Invalid log option: " + arg);
+                        return;
+                    }
+                }
+                if (maxCount < 0) {
+                    maxCount = Integer.MAX_VALUE;  // as in git, a negative count means no limit
+                }
+                try {
+                    if (follow && path == null) {
+                        System.out.println("--follow requires exactly one path");
+                        return;
+                    }
+                    repo.log(maxCount, since, author, grep, path, follow);
+                } catch (PatternSyntaxException e) {
+                    System.out.println("Invalid pattern: " + e.getPattern());
+                }
+                break;
+            case "diff":
+                boolean cached = false;
+                boolean renames = false;
+                boolean copies = false;
+                DiffAlgorithm algorithm = null;
+                List<String> commits = new ArrayList<>();
+                for (int i = 1; i < args.length; i++) {
+                    String arg = args[i];
+                    if (arg.equals("--cached") || arg.equals("--staged")) {
+                        cached = true;
+                    } else if (arg.equals("-M") || arg.equals("--find-renames")) {
+                        renames = true;
+                    } else if (arg.equals("-C") || arg.equals("--find-copies")) {
+                        copies = true;
+                    } else if (arg.equals("--histogram")) {
+                        algorithm = DiffAlgorithm.HISTOGRAM;
+                    } else if (arg.equals("--minimal")) {
+                        algorithm = DiffAlgorithm.MYERS;
+                    } else if (arg.startsWith("--diff-algorithm=")) {
+                        try {
+                            algorithm = DiffAlgorithm.fromName(arg.substring("--diff-algorithm=".length()));
+                        } catch (IllegalArgumentException e) {
+                            System.out.println(e.getMessage());
+                            return;
+                        }
+                    } else if (arg.startsWith("-")) {
+                        System.out.println("Unknown diff option: " + arg);
+                        return;
+                    } else {
+                        commits.add(arg);
+                    }
+                }
+                if (commits.size() == 2 && !cached) {
+                    repo.diff(commits.get(0), commits.get(1), algorithm, renames, copies);
+                } else if (commits.isEmpty()) {
+                    if (cached) {
+                        repo.diffCached(algorithm, renames, copies);
+                    } else {
+                        repo.diff(algorithm);
+                    }
+                } else {
+                    System.out.println("Usage: diff [--cached] [-M] [-C] [--histogram | --diff-algorithm=<name>] [<commit> <commit>]");
+                }
                 break;
             case "status":
                 repo.status();
@@ -47,14 +161,60 @@ public class Main {
                 break;
             case "checkout":
                 if (args.length < 2) {
-                    System.out.println("Please specify a commit hash");
+                    System.out.println("Please specify a branch or commit hash");
                     return;
                 }
                 repo.checkout(args[1]);
                 break;
+            case "branch":
+                if (args.length == 1) {
+                    repo.listBranches();
+                } else if (args[1].equals("-d")) {
+                    if (args.length < 3) {
+                        System.out.println("Usage: branch [-d] <name> [<commit>]");
+                        return;
+                    }
+                    repo.deleteBranch(args[2]);
+                } else {
+                    repo.createBranch(args[1], args.length > 2 ? args[2] : null);
+                }
+                break;
+            case "tag":
+                if (args.length == 1) {
+                    repo.listTags();
+                } else if (args[1].equals("-d")) {
+                    if (args.length < 3) {
+                        System.out.println("Usage: tag [-d] <name> [<commit>]");
+                        return;
+                    }
+                    repo.deleteTag(args[2]);
+                } else {
+                    repo.createTag(args[1], args.length > 2 ? args[2] : null);
+                }
+                break;
+            case "merge":
+                if (args.length < 3) {
+                    System.out.println("Usage: merge <branch or commit> \"<author>\"");
+                    return;
+                }
+                repo.merge(args[1], args[2]);
+                break;
+            case "repack":
+                int depth = 50;
+                if (args.length > 1 && args[1].startsWith("--depth=")) {
+                    try {
+                        depth = Integer.parseInt(args[1].substring("--depth=".length()));
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid depth: " + args[1]);
+                        return;
+                    }
+                }
+                repo.repack(depth);
+                break;
             default:
                 System.out.println("Unknown command: " + command);
         }
+        Trace.end("command " + command, start);
         
         // // Test the Hasher
         // String input = "Hello, Git Clone!";
@@ -66,7 +226,7 @@ public class Main {
         // Object blobObject = new Object("blob", "Hello, Git!");
         // System.out.println("Type: " + blobObject.getType());
         // System.out.println("Content: " + blobObject.getContent());
-        // System.out.println("Hash: " + blobObject.getHash());
+        // System.out.println("Id: " + blobObject.getId());
         // System.out.println("Object: " + blobObject);
 
         // // Test the Commit Git Object
@@ -75,4 +235,24 @@ public class Main {
         // Commit commit = new Commit(treeHash, parentHash, "John Doe <john@example.com>", "Initial commit");
         // System.out.println(commit);
     }
-}
\ No newline at end of file
+
+    /**
+     * Parses a date given to {@code log --since}: an ISO instant such as
+     * {@code 2024-05-01T12:00:00Z}, or a local date or date-time such as
+     * {@code 2024-05-01} or {@code 2024-05-01T12:00} in the system time zone.
+     *
+     * @param value The date to parse.
+     * @return The corresponding instant.
+     * @throws DateTimeParseException If the value is not in a supported format.
+     */
+    private static Instant parseDate(String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            if (value.contains("T")) {
+                return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant();
+            }
+            return LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        }
+    }
+}
@@ -1,16 +1,66 @@
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Properties;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.time.Instant;
 
-import static utils.Hasher.computeSHA1;
+import diff.DiffAlgorithm;
+import diff.DiffEntry;
+import diff.RenameDetector;
+import diff.Text;
+import diff.ThreeWayMerge;
+import diff.TreeDiff;
+import diff.UnifiedFormatter;
+import graph.CommitGraph;
+import graph.MergeBase;
+import index.Index;
+import index.IndexEntry;
+import index.WorkingTree;
 import objects.Commit;
+import objects.ObjectId;
+import objects.ObjectStream;
+import objects.ObjectStore;
+import objects.Tree;
+import refs.RefDatabase;
+import utils.Config;
+import utils.HashAlgorithm;
+import utils.Hasher;
+import utils.Trace;
 
 /**
  * Represents a version control repository.
@@ -20,13 +70,19 @@ import objects.Commit;
  * tracking files to be added.
  */
 public class Repository {
+    private static final int DIFF_CONTEXT = 3;
+    private static final String DEFAULT_BRANCH = "main";
+
     private final String path;
-    private final HashMap<String, String> trackedFiles;
-    private final LinkedList<Commit> commitHistory;
+    private Index index;
+    private final HashMap<ObjectId, Commit> commits;
     private Commit currentCommit;
-    private final HashMap<String, String> fileContents;
-    private final HashMap<String, HashMap<String, String>> commitSnapshots;
-    private final String indexPath;
+    private boolean headLoaded;
+    private Config config;
+    private HashAlgorithm hashAlgorithm;
+    private ObjectStore objectStore;
+    private RefDatabase refs;
+    private CommitGraph commitGraph;
 
     /**
      * Constructs a new {@code Repository} instance with the specified path.
@@ -35,26 +91,55 @@ public class Repository {
      */
     public Repository(String path) {
         this.path = path;
-        this.trackedFiles = new HashMap<>();
-        this.commitHistory = new LinkedList<>();
-        this.currentCommit = null;
-        this.fileContents = new HashMap<>();
-        this.commitSnapshots = new HashMap<>();
-        this.indexPath = path + "/.git/index";
-
-        loadIndex();
-        loadCommits();
+        this.commits = new HashMap<>();
+        this.config = Config.load(Path.of(path, ".git", "config"));
+        this.hashAlgorithm = HashAlgorithm.fromName(config.get("extensions", "objectformat", "sha1"));
+        this.objectStore = new ObjectStore(Path.of(path, ".git", "objects"), hashAlgorithm);
+        this.refs = new RefDatabase(Path.of(path, ".git"), hashAlgorithm);
     }
 
     /**
      * Initializes the repository by creating a `.git` directory at the specified path.
      * If the repository already exists, it notifies the user.
+     * Objects in the new repository are named with SHA-1.
      */
     public void init() {
+        init(HashAlgorithm.SHA1);
+    }
+
+    /**
+     * Initializes the repository by creating a `.git` directory at the specified path,
+     * recording the hash algorithm used to name objects in the repository config.
+     * HEAD starts out pointing to the branch {@code main}, which is created by
+     * the first commit. If the repository already exists, it notifies the user.
+     *
+     * @param algorithm The hash algorithm for the repository's objects.
+     */
+    public void init(HashAlgorithm algorithm) {
         File gitDir = new File(path + "/.git");
         if (!gitDir.exists()) {
             if (gitDir.mkdirs()) {
-                System.out.println("Initialized empty Git repository in " + gitDir.getPath());
+                hashAlgorithm = algorithm;
+                objectStore = new ObjectStore(Path.of(path, ".git", "objects"), hashAlgorithm);
+                refs = new RefDatabase(gitDir.toPath(), hashAlgorithm);
+                index = Index.empty(Path.of(path, ".git", "index"), hashAlgorithm);
+                config = Config.load(Path.of(path, ".git", "config"));
+                config.set("core", "repositoryformatversion", "1");
+                config.set("extensions", "objectformat", algorithm.getName());
+                try {
+                    config.save();
+                } catch (IOException e) {
+                    System.err.println("Error saving config: " + e.getMessage());
+                }
+                try {
+                    Files.createDirectories(Path.of(path, ".git", "refs", "heads"));
+                    Files.createDirectories(Path.of(path, ".git", "refs", "tags"));
+                    refs.link("HEAD", RefDatabase.HEADS + DEFAULT_BRANCH);
+                } catch (IOException e) {
+                    System.err.println("Error creating refs: " + e.getMessage());
+                }
+                System.out.println("Initialized empty Git repository in " + gitDir.getPath()
+                        + " (object format " + algorithm.getName() + ")");
             }
         } else {
             System.out.println("Repository already exists.");
@@ -63,462 +148,1901 @@ public class Repository {
 
     /**
      * Adds a file to the repository.
-     * If the file is found at the specified path, it reads the content, computes its hash,
-     * and adds it to the tracking system.
+     * If the file is found at the specified path, it is streamed from disk into the
+     * object store as a blob and its id is added to the tracking system.
      *
      * @param fileName The name of the file to be added.
      */
     public void addFile(String fileName) {
-        File file = new File(path + "/" + fileName);
-        if (file.exists()) {
+        addFiles(List.of(fileName));
+    }
+
+    /**
+     * Adds files, directories and glob patterns to the repository.
+     *
+     * Directories (including {@code .}) are walked recursively, and patterns containing
+     * {@code *}, {@code ?}, {@code [} or <code>{</code> are matched as globs against paths
+     * relative to the repository root (use {@code **} to match across directories).
+     * The {@code .git} directory is always skipped, and so are symbolic links, which
+     * {@link WorkingTree} does not track either. Matching files are hashed and stored
+     * in parallel, and the index is written once after all of them have been added.
+     * Files whose stat data still matches their index entry are not read or rehashed.
+     *
+     * @param pathspecs The files, directories or glob patterns to add.
+     */
+    public void addFiles(List<String> pathspecs) {
+        Path root = Path.of(path).toAbsolutePath().normalize();
+        TreeSet<Path> files = new TreeSet<>();
+        for (String spec : pathspecs) {
+            try {
+                if (!collectFiles(root, spec, files)) {
+                    System.out.println("File not found: " + spec);
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading " + spec + " - " + e.getMessage());
+            }
+        }
+
+        ConcurrentHashMap<String, IndexEntry> added = new ConcurrentHashMap<>();
+        files.parallelStream().forEach(relative -> {
+            String fileName = toRepoPath(relative);
+            Path file = root.resolve(relative);
             try {
-                String content = Files.readString(Paths.get(file.getPath()));
-                String fileHash = computeSHA1(content);
-                fileContents.put(fileHash, content);
-                trackedFiles.put(fileName, fileHash);
-                saveIndex();
-                
-                System.out.println("File added to repository: " + fileName);
+                BasicFileAttributes attrs = WorkingTree.readAttributes(file);
+                IndexEntry entry = index().get(fileName);
+                if (entry == null || !index().isUpToDate(entry, file, attrs)) {
+                    entry = IndexEntry.of(fileName, objectStore.writeBlob(file), file, attrs);
+                }
+                added.put(fileName, entry);
             } catch (IOException e) {
                 System.out.println("Error reading file: " + fileName + " - " + e.getMessage());
             }
+        });
+        if (added.isEmpty()) {
+            return;
+        }
+
+        for (IndexEntry entry : added.values()) {
+            index().put(entry);
+        }
+        saveIndex();
+
+        if (added.size() == 1) {
+            System.out.println("File added to repository: " + added.keySet().iterator().next());
         } else {
-            System.out.println("File not found: " + fileName);
+            System.out.println("Added " + added.size() + " files to repository.");
         }
     }
 
+    /**
+     * Collects the files matched by a single pathspec.
+     *
+     * @param root  The repository root.
+     * @param spec  A file, directory or glob pattern.
+     * @param files The set receiving matched paths, relative to the root.
+     * @return true if the pathspec matched at least one file, or named a
+     *         symbolic link, which is reported and skipped.
+     * @throws IOException If a directory could not be walked.
+     */
+    private boolean collectFiles(Path root, String spec, Set<Path> files) throws IOException {
+        int before = files.size();
+        if (spec.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{')) {
+            PathMatcher matcher = root.getFileSystem().getPathMatcher("glob:" + spec);
+            walkFiles(root, root, relative -> matcher.matches(relative), files);
+            return files.size() > before;
+        }
+
+        Path target = root.resolve(spec).normalize();
+        if (!target.startsWith(root)) {
+            return false;
+        }
+        if (Files.isSymbolicLink(target)) {
+            System.out.println("Skipping symbolic link: " + spec);
+            return true;
+        }
+        if (Files.isDirectory(target)) {
+            walkFiles(root, target, _ -> true, files);
+        } else if (Files.isRegularFile(target)) {
+            files.add(root.relativize(target));
+        }
+        return files.size() > before;
+    }
+
+    /**
+     * Walks a directory tree, collecting regular files accepted by a filter
+     * and skipping the {@code .git} directory.
+     *
+     * @param root   The repository root that collected paths are relative to.
+     * @param start  The directory to walk.
+     * @param filter Decides which root-relative paths to collect.
+     * @param files  The set receiving collected paths.
+     * @throws IOException If the walk fails.
+     */
+    private void walkFiles(Path root, Path start, Predicate<Path> filter, Set<Path> files) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.getFileName() != null && dir.getFileName().toString().equals(".git")
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                Path relative = root.relativize(file);
+                if (attrs.isRegularFile() && filter.test(relative)) {
+                    files.add(relative);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Error reading " + file + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Converts a root-relative path to the {@code /}-separated name used in the index.
+     *
+     * @param relative The path relative to the repository root.
+     * @return The repository path.
+     */
+    private static String toRepoPath(Path relative) {
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
     /**
      * Commits the current changes by creating a new Commit object.
-     * The commit includes all tracked files and their hashes.
+     * The commit includes all tracked files and their hashes. The index keeps
+     * its entries afterwards, so it always describes the next commit's files.
+     * While a merge is in progress the commit gets the merged commit as its
+     * second parent, and it is made even if the tree did not change.
      *
      * @param message The commit message describing the changes.
      * @param author  The author of this commit.
      */
     public void commit(String message, String author) {
-        if (trackedFiles.isEmpty()) {
+        if (index().isEmpty()) {
             System.out.println("No files to commit.");
             return;
         }
 
-        HashMap<String, String> commitFiles = new HashMap<>();
-        for (var entry : trackedFiles.entrySet()) {
-            String fileName = entry.getKey();
-            String fileHash = entry.getValue();
-            commitFiles.put(fileName, fileHash);
-
-            if (!fileContents.containsKey(fileHash)) {
-                try {
-                    String content = Files.readString(Paths.get(path + "/" + fileName));
-                    fileContents.put(fileHash, content);
-                } catch (IOException e) {
-                    System.err.println("Error reading file content: " + fileName);
-                }
+        ObjectId treeId = index().getCachedTree("");
+        if (treeId == null) {
+            try {
+                List<IndexEntry> entries = new ArrayList<>(index().entries());
+                treeId = writeTree(entries, 0, entries.size(), "");
+            } catch (IOException e) {
+                System.err.println("Error writing tree: " + e.getMessage());
+                return;
             }
+            saveIndex();
         }
-
-        StringBuilder treeBuilder = new StringBuilder();
-        for (var entry : trackedFiles.entrySet()) {
-            String fileName = entry.getKey();
-            String fileHash = entry.getValue();
-            treeBuilder.append(fileName).append(fileHash);
+        ObjectId mergeHead = readMergeHead();
+        if (head() != null && mergeHead == null && treeId.equals(head().getTreeId())) {
+            System.out.println("No changes to commit.");
+            return;
         }
 
-        String treeHash = computeSHA1(treeBuilder.toString());
-        String parentHash = currentCommit != null ? currentCommit.getHash() : null;
-        Commit newCommit = new Commit(treeHash, parentHash, author, message);
-
-        commitSnapshots.put(newCommit.getHash(), new HashMap<>(commitFiles));
-        commitHistory.add(newCommit);
+        List<ObjectId> parentIds = new ArrayList<>();
+        if (head() != null) {
+            parentIds.add(head().getId());
+        }
+        if (mergeHead != null) {
+            parentIds.add(mergeHead);
+        }
+        Commit newCommit = new Commit(treeId, parentIds, author, Instant.now(), message);
+        try {
+            objectStore.write(newCommit);
+        } catch (IOException e) {
+            System.err.println("Error writing commit: " + e.getMessage());
+            return;
+        }
+        commits.put(newCommit.getId(), newCommit);
+        Commit previous = currentCommit;
         currentCommit = newCommit;
-
-        trackedFiles.clear();
-        saveIndex();
-        saveCommits();
+        headLoaded = true;
+        if (!saveHEAD()) {
+            currentCommit = previous;
+            return;
+        }
+        if (mergeHead != null) {
+            try {
+                Files.deleteIfExists(mergeHeadPath());
+            } catch (IOException e) {
+                System.err.println("Error removing MERGE_HEAD: " + e.getMessage());
+            }
+        }
 
         System.out.println("Commit successful!");
         System.out.println("Commit details:");
         System.out.println(newCommit);
     }
 
+    /**
+     * Writes the tree for one directory of the index, and its subtrees, to the object store.
+     *
+     * Index entries are sorted by path, so the entries below any directory form a
+     * contiguous range. Each directory becomes one {@link Tree}. Directories whose
+     * tree id is still cached in the index are skipped without looking at their
+     * entries; the others are rebuilt and their new tree ids cached. Trees that
+     * already exist in the store are not written again.
+     *
+     * @param entries The index entries, sorted by path.
+     * @param from    The first entry belonging to the directory.
+     * @param to      One past the last entry belonging to the directory.
+     * @param prefix  The directory path followed by {@code /}, or empty for the root.
+     * @return The id of the directory's tree.
+     * @throws IOException If a tree could not be written.
+     */
+    private ObjectId writeTree(List<IndexEntry> entries, int from, int to, String prefix) throws IOException {
+        ObjectId cached = index().getCachedTree(prefix);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Tree.Entry> treeEntries = new ArrayList<>();
+        int i = from;
+        while (i < to) {
+            IndexEntry entry = entries.get(i);
+            String name = entry.getPath().substring(prefix.length());
+            int slash = name.indexOf('/');
+            if (slash < 0) {
+                treeEntries.add(new Tree.Entry(entry.getMode(), name, entry.getId()));
+                i++;
+                continue;
+            }
+
+            String dir = prefix + name.substring(0, slash + 1);
+            int end = endOfDirectory(entries, i + 1, to, dir);
+            ObjectId subtreeId = writeTree(entries, i, end, dir);
+            treeEntries.add(new Tree.Entry(Tree.MODE_TREE, name.substring(0, slash), subtreeId));
+            i = end;
+        }
+
+        Tree tree = new Tree(hashAlgorithm, treeEntries);
+        objectStore.write(tree);
+        index().putCachedTree(prefix, tree.getId());
+        return tree.getId();
+    }
+
+    /**
+     * Finds the end of the range of index entries below a directory by binary search.
+     *
+     * @param entries The index entries, sorted by path.
+     * @param from    An index at or before the end of the range.
+     * @param to      The upper bound of the search.
+     * @param dir     The directory path followed by {@code /}.
+     * @return One past the last entry whose path starts with {@code dir}.
+     */
+    private static int endOfDirectory(List<IndexEntry> entries, int from, int to, String dir) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries.get(mid).getPath().startsWith(dir)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     /**
      * Prints the commit history, starting from the latest commit and moving backward.
      */
     public void log() {
-        if (commitHistory.isEmpty()) {
+        log(Integer.MAX_VALUE, null, null, null, null, false);
+    }
+
+    /**
+     * Prints the commit history, starting from the latest commit and moving backward.
+     *
+     * The walk takes the parents, root tree and commit time of each commit from
+     * the commit-graph, so commits that were there at the last repack are never
+     * parsed just to be walked past or filtered out by {@code since} or
+     * {@code path}; only the commits made since are read from the object store.
+     * A commit object is read only when its author or message is needed, to
+     * match {@code author} or {@code grep} or to be printed. All parents of merge
+     * commits are followed, and commits are printed newest first from a queue
+     * ordered by commit time. The walk stops as soon as {@code maxCount} commits
+     * have been printed or it reaches a commit older than {@code since}. Output
+     * goes through one buffered writer that is flushed at the end.
+     *
+     * @param maxCount The maximum number of commits to print.
+     * @param since    Only print commits made at or after this time, or null for no limit.
+     * @param author   A regular expression the author must contain a match for, or null.
+     * @param grep     A regular expression the message must contain a match for, or null.
+     * @param path     Only print commits that changed this file, or null for all commits.
+     *                 Each commit is compared with its parents along that path only;
+     *                 a merge that kept one parent's version is not printed.
+     * @param follow   Whether to keep following the file's history past a rename,
+     *                 detected as in {@code diff -M} in the commit that added it.
+     */
+    public void log(int maxCount, Instant since, String author, String grep, String path, boolean follow) {
+        if (head() == null) {
             System.out.println("No commits yet.");
             return;
         }
+        Pattern authorPattern = author != null ? Pattern.compile(author) : null;
+        Pattern grepPattern = grep != null ? Pattern.compile(grep) : null;
 
-        System.out.println("Commit History:");
-        for (Commit commit : commitHistory) {
-            System.out.println("Commit " + commit.getHash());
-            System.out.println("Tree: " + commit.getTreeHash());
-            System.out.println("Parent: " + (commit.getParentHash() != null ? commit.getParentHash() : "None"));
-            System.out.println("Author: " + commit.getAuthor());
-            System.out.println("Date: " + commit.getTimestamp());
-            System.out.println("\n    " + commit.getMessage());
-            System.out.println();
+        PrintWriter out = bufferedOutput();
+        out.println("Commit History:");
+        String followed = path;
+        int printed = 0;
+        PriorityQueue<WalkedCommit> pending = new PriorityQueue<>(WalkedCommit.NEWEST_FIRST);
+        HashMap<ObjectId, WalkedCommit> walked = new HashMap<>();
+        WalkedCommit start = walkedCommit(head().getId());
+        pending.add(start);
+        walked.put(start.id, start);
+        while (!pending.isEmpty() && printed < maxCount) {
+            WalkedCommit walkedCommit = pending.poll();
+            if (since != null && walkedCommit.time.isBefore(since)) {
+                break;
+            }
+            List<WalkedCommit> parents = new ArrayList<>(walkedCommit.parentIds.size());
+            for (ObjectId parentId : walkedCommit.parentIds) {
+                WalkedCommit parent = walked.get(parentId);
+                if (parent == null && !walked.containsKey(parentId)) {
+                    parent = walkedCommit(parentId);
+                    walked.put(parentId, parent);
+                    if (parent != null) {
+                        pending.add(parent);
+                    }
+                }
+                if (parent != null) {
+                    parents.add(parent);
+                }
+            }
+            // Checked before the other filters so renames are followed in every commit
+            if (followed != null) {
+                String previousPath;
+                try {
+                    previousPath = changedPath(walkedCommit, parents, followed, follow);
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Error comparing trees of commit " + walkedCommit.id + ": " + e.getMessage());
+                    break;
+                }
+                if (previousPath == null) {
+                    continue;
+                }
+                followed = previousPath;
+            }
+            Commit commit = readCommit(walkedCommit.id);
+            if (commit == null) {
+                continue;
+            }
+            if (authorPattern != null && !authorPattern.matcher(commit.getAuthor()).find()) {
+                continue;
+            }
+            if (grepPattern != null && !grepPattern.matcher(commit.getMessage()).find()) {
+                continue;
+            }
+            out.println("Commit " + commit.getId());
+            out.println("Tree: " + commit.getTreeId());
+            out.println("Parent: " + (commit.getParentId() != null ? commit.getParentId() : "None"));
+            if (commit.getParentIds().size() > 1) {
+                StringBuilder merge = new StringBuilder("Merge:");
+                for (ObjectId parentId : commit.getParentIds()) {
+                    merge.append(' ').append(parentId);
+                }
+                out.println(merge);
+            }
+            out.println("Author: " + commit.getAuthor());
+            out.println("Date: " + commit.getTimestamp());
+            out.println("\n    " + commit.getMessage());
+            out.println();
+            printed++;
         }
+        out.flush();
     }
 
     /**
-     * Displays the current state of the repository, including tracked files and their hashes
-     * based on the current commit's tree hash.
+     * Checks whether a commit changed a file. A merge commit only changed it if
+     * it differs from every parent; otherwise the merge took one parent's version.
+     *
+     * @param commit  The commit.
+     * @param parents The commit's parents that could be read, first parent first.
+     * @param path    The path of the file in the commit.
+     * @param follow  Whether to look for the file's previous path if the commit added it.
+     * @return null if the commit did not change the file, otherwise the path of the
+     *         file in the commit's first parent: the same path, unless the file was renamed.
+     * @throws IOException If a tree could not be read.
      */
-    public void status() {
-        System.out.println("Repository status:");
-        
-        if (!trackedFiles.isEmpty()) {
-            System.out.println("Staged files:");
-            for (String fileName : trackedFiles.keySet()) {
-                System.out.println("    " + fileName);
+    private String changedPath(WalkedCommit commit, List<WalkedCommit> parents, String path, boolean follow)
+            throws IOException {
+        ObjectId parentTree = parents.isEmpty() ? null : parents.get(0).treeId;
+        TreeDiff pathDiff = new TreeDiff(objectStore).setPathFilter(path);
+        List<DiffEntry> changes = pathDiff.diff(parentTree, commit.treeId);
+        if (changes.isEmpty()) {
+            return null;
+        }
+        for (int i = 1; i < parents.size(); i++) {
+            if (pathDiff.diff(parents.get(i).treeId, commit.treeId).isEmpty()) {
+                return null;
             }
-        } else {
-            System.out.println("No files staged for commit");
         }
-        
-        if (currentCommit != null) {
-            System.out.println("Current commit: " + currentCommit.getHash());
-        } else {
-            System.out.println("No commits yet");
+        if (follow && parentTree != null && changes.get(0).getType() == DiffEntry.ChangeType.ADD) {
+            List<DiffEntry> all = new TreeDiff(objectStore).diff(parentTree, commit.treeId);
+            for (DiffEntry change : renameDetector(false).detect(all)) {
+                if (change.getType() == DiffEntry.ChangeType.RENAME && path.equals(change.getNewPath())) {
+                    return change.getOldPath();
+                }
+            }
         }
+        return path;
     }
 
     /**
-     * Removes a file from the repository's tracking system.
-     * This does not delete the file itself but stops tracking it,
-     * which will be reflected in subsequent commits.
+     * Returns the structure of a commit for walking history: from the
+     * commit-graph if the commit is in it, otherwise from the commit object.
      *
-     * @param fileName The name of the file to remove.
+     * @param id The id of the commit.
+     * @return The commit's structure, or null if the commit is missing.
      */
-    public void removeFile(String fileName) {
-        if (trackedFiles.containsKey(fileName)) {
-            trackedFiles.remove(fileName);
-            System.out.println("File removed from tracking: " + fileName);
-        } else {
-            System.out.println("File not found in tracking: " + fileName);
+    private WalkedCommit walkedCommit(ObjectId id) {
+        CommitGraph graph = commitGraph();
+        int position = graph != null ? graph.find(id) : -1;
+        if (position >= 0) {
+            int[] parentPositions = graph.parentsAt(position);
+            List<ObjectId> parentIds = new ArrayList<>(parentPositions.length);
+            for (int parent : parentPositions) {
+                parentIds.add(graph.idAt(parent));
+            }
+            return new WalkedCommit(id, graph.treeAt(position), parentIds,
+                    Instant.ofEpochSecond(graph.commitTimeAt(position)), graph.generationAt(position));
         }
+        Commit commit = readCommit(id);
+        if (commit == null) {
+            return null;
+        }
+        return new WalkedCommit(id, commit.getTreeId(), commit.getParentIds(), commit.getTimestamp(),
+                Integer.MAX_VALUE);
     }
 
     /**
-     * Reverts the repository to the specified commit ID.
-     * All files are restored to the state represented by the commit's tree hash.
-     *
-     * @param commitHash The hash of the commit to revert to.
-     */
-    public void checkout(String commitHash) {
-        for (Commit commit : commitHistory) {
-            if (commit.getHash().equals(commitHash)) {
-                currentCommit = commit;
-                
-                HashMap<String, String> snapshot = commitSnapshots.get(commitHash);
-                if (snapshot != null) {
-                    trackedFiles.clear();
-
-                    for (var entry : snapshot.entrySet()) {
-                        String fileName = entry.getKey();
-                        String fileHash = entry.getValue();
-                        String content = fileContents.get(fileHash);
-                        
-                        if (content != null) {
-                            try {
-                                Files.writeString(Paths.get(path + "/" + fileName), content);
-                                trackedFiles.put(fileName, fileHash);
-                                System.out.println("Restored file: " + fileName);
-                            } catch (IOException e) {
-                                System.err.println("Error restoring file " + fileName + ": " + e.getMessage());
-                            }
-                        } else {
-                            System.err.println("Content not found for file: " + fileName + " (hash: " + fileHash + ")");
-                        }
-                    }
-                    
-                    // Clear the stage after checkout
-                    trackedFiles.clear();
-                    saveIndex();
-                    saveHEAD();
-                }
-                
-                System.out.println("Checked out commit " + commitHash);
-                System.out.println("Repository is now at commit:");
-                System.out.println(commit);
-                
+     * The structure of one commit, as far as walking history needs it.
+     *
+     * The commit-graph stores commit times in whole seconds, so commits of the
+     * same second are ordered by generation number, which puts every commit
+     * before its ancestors. Commits not in the graph yet have the highest
+     * generation: they can only be descendants of the commits in it.
+     */
+    private static final class WalkedCommit {
+        static final Comparator<WalkedCommit> NEWEST_FIRST = Comparator
+                .comparingLong((WalkedCommit c) -> c.time.getEpochSecond())
+                .thenComparingInt(c -> c.generation)
+                .thenComparing(c -> c.time)
+                .reversed();
+
+        final ObjectId id;
+        final ObjectId treeId;
+        final List<ObjectId> parentIds;
+        final Instant time;
+        final int generation;
+
+        WalkedCommit(ObjectId id, ObjectId treeId, List<ObjectId> parentIds, Instant time, int generation) {
+            this.id = id;
+            this.treeId = treeId;
+            this.parentIds = parentIds;
+            this.time = time;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Displays the current state of the repository by comparing the current commit,
+     * the index and the working tree.
+     *
+     * Changes between the current commit and the index are staged; changes between
+     * the index and the working tree are not staged yet; files in the working tree
+     * that are not in the index are untracked. Files whose stat data matches their
+     * index entry are not read. Files that had to be hashed but turned out unchanged
+     * get their stat data refreshed in the index, so the next status skips them.
+     */
+    public void status() {
+        System.out.println("Repository status:");
+        String branch = currentBranch();
+        System.out.println(branch != null ? "On branch " + branch : "HEAD detached");
+        if (head() != null) {
+            System.out.println("Current commit: " + head().getId());
+        } else {
+            System.out.println("No commits yet");
+        }
+        ObjectId mergeHead = readMergeHead();
+        if (mergeHead != null) {
+            System.out.println("Merging commit " + mergeHead + " (commit to conclude the merge)");
+        }
+
+        long start = Trace.start();
+        TreeMap<String, String> staged = new TreeMap<>();
+        for (DiffEntry change : stagedChanges()) {
+            staged.put(change.getPath(), switch (change.getType()) {
+                case ADD -> "new file";
+                case DELETE -> "deleted";
+                default -> "modified";
+            });
+        }
+        Trace.end("compare HEAD and index", start);
+
+        start = Trace.start();
+        Path root = Path.of(path).toAbsolutePath().normalize();
+        Map<String, BasicFileAttributes> files = WorkingTree.scan(root);
+        Trace.end("scan working tree (" + files.size() + " files)", start);
+        start = Trace.start();
+        ConcurrentSkipListMap<String, String> unstaged = new ConcurrentSkipListMap<>();
+        ConcurrentHashMap<String, IndexEntry> refreshed = new ConcurrentHashMap<>();
+        LongAdder trackedFiles = new LongAdder();
+        index().entries().parallelStream().forEach(entry -> {
+            String fileName = entry.getPath();
+            BasicFileAttributes attrs = files.get(fileName);
+            if (attrs == null) {
+                unstaged.put(fileName, "deleted");
+                return;
+            }
+            trackedFiles.increment();
+            Path file = root.resolve(fileName);
+            if (index().isUpToDate(entry, file, attrs)) {
                 return;
             }
+            try {
+                ObjectId id = ObjectId.fromRaw(Hasher.digest(hashAlgorithm, file, "blob"));
+                if (id.equals(entry.getId())) {
+                    refreshed.put(fileName, IndexEntry.of(fileName, id, file, attrs));
+                } else {
+                    unstaged.put(fileName, "modified");
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + fileName + " - " + e.getMessage());
+            }
+        });
+        TreeSet<String> untracked = new TreeSet<>();
+        if (trackedFiles.sum() < files.size()) {
+            for (String fileName : files.keySet()) {
+                if (!index().contains(fileName)) {
+                    untracked.add(fileName);
+                }
+            }
+        }
+        Trace.end("compare index and working tree", start);
+
+        if (!refreshed.isEmpty()) {
+            for (IndexEntry entry : refreshed.values()) {
+                index().put(entry);
+            }
+            saveIndex();
         }
 
-        System.out.println("Commit with hash " + commitHash + " not found.");
+        printChanges("Changes to be committed:", staged);
+        printChanges("Changes not staged for commit:", unstaged);
+        if (!untracked.isEmpty()) {
+            System.out.println("Untracked files:");
+            for (String fileName : untracked) {
+                System.out.println("    " + fileName);
+            }
+        }
+        if (staged.isEmpty() && unstaged.isEmpty() && untracked.isEmpty()) {
+            System.out.println("Nothing to commit, working tree clean");
+        }
     }
 
     /**
-     * Saves the current state of the index file.
+     * Prints one section of the status output.
      *
-     * This method serializes the tracked files along with their corresponding file hashes
-     * and writes the data to the index file to persist the current state.
+     * @param title   The section heading.
+     * @param changes The kind of change for each path, sorted by path.
      */
-    private void saveIndex() {
-        try {
-            Properties props = new Properties();
-            for (var entry : trackedFiles.entrySet()) {
-                props.setProperty(entry.getKey(), entry.getValue());
-            }
-            File gitDir = new File(path + "/.git");
-            if (!gitDir.exists()) {
-                gitDir.mkdirs();
-            }
-            props.store(new FileOutputStream(indexPath), "Staged files");
-        } catch (IOException e) {
-            System.err.println("Error saving index: " + e.getMessage());
+    private static void printChanges(String title, Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        System.out.println(title);
+        for (var change : changes.entrySet()) {
+            System.out.printf("    %-10s %s%n", change.getValue() + ":", change.getKey());
         }
     }
 
     /**
-     * Loads the index from the saved state.
+     * Returns the files of the current commit with their modes, as the changes
+     * that add them to an empty tree.
      *
-     * This method reconstructs the tracked files by reading from the index file
-     * and initializing the `trackedFiles` map with their previous state.
+     * @return The addition of each file by path, empty if there are no commits
+     *         yet or the tree could not be read.
      */
-    private void loadIndex() {
+    private SortedMap<String, DiffEntry> headFiles() {
+        TreeMap<String, DiffEntry> files = new TreeMap<>();
+        if (head() == null) {
+            return files;
+        }
         try {
-            Properties props = new Properties();
-            props.load(new FileInputStream(indexPath));
-            for (String key : props.stringPropertyNames()) {
-                trackedFiles.put(key, props.getProperty(key));
+            for (DiffEntry file : new TreeDiff(objectStore).diff(null, head().getTreeId())) {
+                files.put(file.getPath(), file);
             }
-        } catch (IOException _) {
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading tree of commit " + head().getId() + ": " + e.getMessage());
         }
+        return files;
     }
 
     /**
-     * Saves all commits into a persistent storage file.
+     * Compares the index with the current commit.
+     *
+     * When the index still has the tree id of its root cached, i.e. nothing was
+     * staged since its trees were last written, the two trees are compared with
+     * {@link TreeDiff}, which skips every directory that did not change.
+     * Otherwise the commit's files are compared with the index entries one by one.
      *
-     * This method serializes all commits from the commit history and writes them to
-     * a storage file for later retrieval.
+     * @return The staged changes.
      */
-    private void saveCommits() {
-        try {
-            StringBuilder sb = new StringBuilder();
-            for (Commit commit : commitHistory) {
-                sb.append(commit.getHash()).append("|")
-                  .append(commit.getTreeHash()).append("|")
-                  .append(commit.getParentHash() != null ? commit.getParentHash() : "null").append("|")
-                  .append(commit.getAuthor()).append("|")
-                  .append(commit.getTimestamp()).append("|")
-                  .append(commit.getMessage().replace("\n", "\\n")).append("|");
-                
-                HashMap<String, String> snapshot = commitSnapshots.get(commit.getHash());
-                if (snapshot != null) {
-                    for (var entry : snapshot.entrySet()) {
-                        sb.append(entry.getKey()).append("=").append(entry.getValue()).append(";");
-                    }
-                }
-                sb.append("\n");
+    private List<DiffEntry> stagedChanges() {
+        ObjectId headTree = head() != null ? head().getTreeId() : null;
+        ObjectId indexTree = index().getCachedTree("");
+        if (indexTree != null) {
+            try {
+                return new TreeDiff(objectStore).diff(headTree, indexTree);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error comparing trees: " + e.getMessage());
             }
+        }
 
-            Files.writeString(Paths.get(path + "/.git/commits"), sb.toString());
-            
-            StringBuilder fileContentsSb = new StringBuilder();
-            for (var entry : fileContents.entrySet()) {
-                fileContentsSb.append(entry.getKey()).append("|")
-                            .append(entry.getValue().replace("\n", "\\n")).append("\n");
+        SortedMap<String, DiffEntry> head = headFiles();
+        List<DiffEntry> changes = new ArrayList<>();
+        for (IndexEntry entry : index().entries()) {
+            DiffEntry headFile = head.get(entry.getPath());
+            if (headFile == null) {
+                changes.add(DiffEntry.added(entry.getPath(), entry.getId(), entry.getMode()));
+            } else if (!headFile.getNewId().equals(entry.getId()) || headFile.getNewMode() != entry.getMode()) {
+                changes.add(DiffEntry.modified(entry.getPath(), headFile.getNewId(), headFile.getNewMode(),
+                        entry.getId(), entry.getMode()));
+            }
+        }
+        for (DiffEntry headFile : head.values()) {
+            if (!index().contains(headFile.getPath())) {
+                changes.add(DiffEntry.deleted(headFile.getPath(), headFile.getNewId(), headFile.getNewMode()));
             }
-            Files.writeString(Paths.get(path + "/.git/contents"), fileContentsSb.toString());
-            
-            saveHEAD();
-        } catch (IOException e) {
-            System.err.println("Error saving commits: " + e.getMessage());
         }
+        return changes;
     }
 
     /**
-     * Loads commits from the storage file.
+     * Prints the changes in the working tree that are not staged yet, as a unified diff.
+     * Files whose stat data still matches their index entry are skipped without being read.
      *
-     * This method reads the serialized commit objects and initializes the commit history
-     * in the repository using the corresponding `Commit` object instances.
+     * @param algorithm The diff algorithm, or null to use {@code diff.algorithm} from the config.
      */
-    private void loadCommits() {
-        try {
+    public void diff(DiffAlgorithm algorithm) {
+        Path root = Path.of(path).toAbsolutePath().normalize();
+        PrintWriter out = bufferedOutput();
+        UnifiedFormatter formatter = new UnifiedFormatter(out, diffAlgorithm(algorithm), DIFF_CONTEXT);
+        for (IndexEntry entry : index().entries()) {
+            String fileName = entry.getPath();
+            Path file = root.resolve(fileName);
             try {
-                String contentsData = Files.readString(Paths.get(path + "/.git/contents"));
-                String[] lines = contentsData.split("\n");
-                for (String line : lines) {
-                    if (!line.trim().isEmpty()) {
-                        String[] parts = line.split("\\|", 2);
-                        if (parts.length == 2) {
-                            fileContents.put(parts[0], parts[1].replace("\\n", "\n"));
-                        }
-                    }
-                }
-            } catch (IOException _) {
-            }
-            
-            String content = Files.readString(Paths.get(path + "/.git/commits"));
-            String[] lines = content.split("\n");
-            for (String line : lines) {
-                if (!line.trim().isEmpty()) {
-                    String[] parts = line.split("\\|");
-                    if (parts.length >= 6) {
-                        String hash = parts[0];
-                        String treeHash = parts[1];
-                        String parentHash = parts[2].equals("null") ? null : parts[2];
-                        String author = parts[3];
-                        Instant timestamp = Instant.parse(parts[4]);
-                        String message = parts[5].replace("\\n", "\n");
-                        
-                        Commit commit = new RestoredCommit(hash, treeHash, parentHash, author, timestamp, message);
-                        commitHistory.add(commit);
-                        
-                        HashMap<String, String> snapshot = new HashMap<>();
-                        if (parts.length > 6 && !parts[6].trim().isEmpty()) {
-                            String[] fileEntries = parts[6].split(";");
-                            for (String entry : fileEntries) {
-                                if (!entry.trim().isEmpty()) {
-                                    String[] fileData = entry.split("=", 2);
-                                    if (fileData.length == 2) {
-                                        snapshot.put(fileData[0], fileData[1]);
-                                    }
-                                }
-                            }
-                        }
-                        commitSnapshots.put(hash, snapshot);
-                    }
+                if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS)) {
+                    formatter.format(fileName, null, blobText(entry.getId()), Text.EMPTY);
+                } else if (!index().isUpToDate(entry, file, WorkingTree.readAttributes(file))) {
+                    formatter.format(fileName, fileName, blobText(entry.getId()), Text.of(Files.readAllBytes(file)));
                 }
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + fileName + " - " + e.getMessage());
             }
-            
-            loadHEAD();
-        } catch (IOException _) {
         }
+        out.flush();
     }
 
     /**
-     * Saves the current state of the HEAD pointer.
+     * Prints the changes staged in the index relative to the current commit, as a unified diff.
      *
-     * The HEAD pointer identifies the current commit. This method serializes the
-     * current HEAD's position and writes it to a file to ensure that future operations
-     * know the latest commit state.
+     * @param algorithm The diff algorithm, or null to use {@code diff.algorithm} from the config.
+     * @param renames   Whether to detect renamed files.
+     * @param copies    Whether to detect copied files as well.
      */
-    private void saveHEAD() {
+    public void diffCached(DiffAlgorithm algorithm, boolean renames, boolean copies) {
+        List<DiffEntry> changes = detectRenames(stagedChanges(), renames, copies);
+        PrintWriter out = bufferedOutput();
+        printDiff(changes, new UnifiedFormatter(out, diffAlgorithm(algorithm), DIFF_CONTEXT));
+        out.flush();
+    }
+
+    /**
+     * Prints the changes between two commits, as a unified diff. Only the
+     * directories that differ between the two commits are read.
+     *
+     * @param from      The hash, or a unique prefix, of the old commit.
+     * @param to        The hash, or a unique prefix, of the new commit.
+     * @param algorithm The diff algorithm, or null to use {@code diff.algorithm} from the config.
+     * @param renames   Whether to detect renamed files.
+     * @param copies    Whether to detect copied files as well.
+     */
+    public void diff(String from, String to, DiffAlgorithm algorithm, boolean renames, boolean copies) {
+        Commit fromCommit = resolveCommit(from);
+        Commit toCommit = fromCommit != null ? resolveCommit(to) : null;
+        if (toCommit == null) {
+            return;
+        }
+        PrintWriter out = bufferedOutput();
+        UnifiedFormatter formatter = new UnifiedFormatter(out, diffAlgorithm(algorithm), DIFF_CONTEXT);
         try {
-            if (currentCommit != null) {
-                Files.writeString(Paths.get(path + "/.git/HEAD"), currentCommit.getHash());
+            TreeDiff treeDiff = new TreeDiff(objectStore);
+            if (renames || copies) {
+                List<DiffEntry> changes = treeDiff.diff(fromCommit.getTreeId(), toCommit.getTreeId());
+                printDiff(detectRenames(changes, renames, copies), formatter);
+            } else {
+                treeDiff.diff(fromCommit.getTreeId(), toCommit.getTreeId(),
+                        change -> printDiff(List.of(change), formatter));
             }
-        } catch (IOException e) {
-            System.err.println("Error saving HEAD: " + e.getMessage());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error comparing trees: " + e.getMessage());
         }
+        out.flush();
     }
 
     /**
-     * Loads the state of the HEAD pointer.
+     * Runs rename detection on a list of changes if requested.
      *
-     * This method reads the stored HEAD pointer data, initializing the repository to
-     * point to the corresponding `Commit` object identified as the current HEAD.
+     * @param changes The changes between two trees.
+     * @param renames Whether to detect renamed files.
+     * @param copies  Whether to detect copied files as well.
+     * @return The changes with renames and copies, or the changes unchanged if
+     *         detection was not requested or failed.
      */
-    private void loadHEAD() {
+    private List<DiffEntry> detectRenames(List<DiffEntry> changes, boolean renames, boolean copies) {
+        if (!renames && !copies) {
+            return changes;
+        }
         try {
-            String headHash = Files.readString(Paths.get(path + "/.git/HEAD")).trim();
-            for (Commit commit : commitHistory) {
-                if (commit.getHash().equals(headHash)) {
-                    currentCommit = commit;
-                    break;
-                }
+            return renameDetector(copies).detect(changes);
+        } catch (IOException e) {
+            System.err.println("Error detecting renames: " + e.getMessage());
+            return changes;
+        }
+    }
+
+    /**
+     * Creates a rename detector configured from {@code diff.renameLimit}.
+     *
+     * @param copies Whether to detect copies as well.
+     * @return The detector.
+     */
+    private RenameDetector renameDetector(boolean copies) {
+        return new RenameDetector(objectStore)
+                .setLimit(config.getInt("diff", "renameLimit", RenameDetector.DEFAULT_LIMIT))
+                .setFindCopies(copies);
+    }
+
+    /**
+     * Prints the content changes of a list of files.
+     *
+     * @param changes   The changed files.
+     * @param formatter The formatter to print with.
+     */
+    private void printDiff(List<DiffEntry> changes, UnifiedFormatter formatter) {
+        for (DiffEntry change : changes) {
+            try {
+                formatter.format(change, blobText(change.getOldId()), blobText(change.getNewId()));
+            } catch (IOException e) {
+                System.err.println("Error reading " + change.getPath() + ": " + e.getMessage());
             }
-        } catch (IOException _) {
         }
     }
 
     /**
-     * A subclass of {@link Commit} that represents a commit restored from persistent storage.
-     *
-     * This class extends the functionality of the parent `Commit` class to include additional
-     * metadata that was preserved when the commit was serialized. It allows for detailed
-     * reconstruction of the commit history with its original state.
-     */
-    private static class RestoredCommit extends Commit {
-        private final String originalHash;
-        private final Instant originalTimestamp;
-        private final String originalTreeHash;
-        private final String originalParentHash;
-        private final String originalAuthor;
-        private final String originalMessage;
-
-        /**
-         * Constructs a new {@code RestoredCommit} instance with its original metadata.
-         *
-         * @param hash        The original hash of the restored commit.
-         * @param timestamp   The original timestamp of the restored commit.
-         * @param treeHash    The tree hash representing the file snapshot of the restored commit.
-         * @param parentHash  The hash of the parent commit (or null if this is the first commit).
-         * @param message     The original commit message.
-         * @param author              The author of this commit.
-         */
-        public RestoredCommit(String hash, String treeHash, String parentHash, String author, Instant timestamp, String message) {
-            super(treeHash, parentHash, author, message);
-            this.originalHash = hash;
-            this.originalTimestamp = timestamp;
-            this.originalTreeHash = treeHash;
-            this.originalParentHash = parentHash;
-            this.originalAuthor = author;
-            this.originalMessage = message;
-        }
-
-        /**
-         * Returns the original hash of this commit.
-         *
-         * @return The hash as a string.
-         */
-        @Override
-        public String getHash() {
-            return originalHash;
-        }
-
-        /**
-         * Returns the original timestamp when the commit was made.
-         *
-         * @return The timestamp as an {@link Instant} object.
-         */
-        @Override
-        public Instant getTimestamp() {
-            return originalTimestamp;
-        }
-
-        /**
-         * Returns the original tree hash that represents the state of the repository for this commit.
-         *
-         * @return The tree hash as a string.
-         */
-        @Override
-        public String getTreeHash() {
-            return originalTreeHash;
-        }
-
-        /**
-         * Returns the original parent hash of this commit.
-         *
-         * @return The hash of the parent commit, or null if this was the first commit.
-         */
-        @Override
-        public String getParentHash() {
-            return originalParentHash;
-        }
-
-        /**
-         * Returns the original author of the commit.
-         *
-         * @return The author as a string.
-         */
-        @Override
-        public String getAuthor() {
-            return originalAuthor;
-        }
-
-        /**
-         * Returns the original commit message.
-         *
-         * @return The commit message as a string.
-         */
-        @Override
-        public String getMessage() {
-            return originalMessage;
-        }
-    }
-}
\ No newline at end of file
+     * Reads a blob and splits it into lines.
+     *
+     * @param id The id of the blob, or null for none.
+     * @return The blob's text, empty if the id is null.
+     * @throws IOException If the blob could not be read.
+     */
+    private Text blobText(ObjectId id) throws IOException {
+        if (id == null) {
+            return Text.EMPTY;
+        }
+        try (ObjectStream in = objectStore.open(id)) {
+            if (in == null) {
+                throw new IOException("Blob not found: " + id);
+            }
+            return Text.of(in.readAllBytes());
+        }
+    }
+
+    /**
+     * Returns the diff algorithm to use.
+     *
+     * @param requested The algorithm given on the command line, or null.
+     * @return The requested algorithm, else the one configured as {@code diff.algorithm}, else Myers.
+     */
+    private DiffAlgorithm diffAlgorithm(DiffAlgorithm requested) {
+        if (requested != null) {
+            return requested;
+        }
+        try {
+            return DiffAlgorithm.fromName(config.get("diff", "algorithm", "myers"));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + ", using myers");
+            return DiffAlgorithm.MYERS;
+        }
+    }
+
+    /**
+     * Creates a writer for long output on standard output. Callers must flush it when done.
+     *
+     * @return A buffered UTF-8 writer.
+     */
+    private static PrintWriter bufferedOutput() {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 65536), false);
+    }
+
+    /**
+     * Removes a file from the repository's tracking system.
+     * This does not delete the file itself but removes it from the index,
+     * so it is left out of subsequent commits.
+     *
+     * @param fileName The name of the file to remove.
+     */
+    public void removeFile(String fileName) {
+        if (index().remove(fileName) != null) {
+            saveIndex();
+            System.out.println("File removed from tracking: " + fileName);
+        } else {
+            System.out.println("File not found in tracking: " + fileName);
+        }
+    }
+
+    /**
+     * Lists the branches, marking the current one with {@code *}.
+     */
+    public void listBranches() {
+        listRefs(RefDatabase.HEADS, currentBranch());
+    }
+
+    /**
+     * Creates a branch.
+     *
+     * @param name       The short name of the branch.
+     * @param startPoint The commit the branch starts at, as a ref name or hash, or null for the current commit.
+     */
+    public void createBranch(String name, String startPoint) {
+        createRef(RefDatabase.HEADS, "branch", name, startPoint);
+    }
+
+    /**
+     * Deletes a branch. The commits on it are kept.
+     *
+     * @param name The short name of the branch, which must not be the current branch.
+     */
+    public void deleteBranch(String name) {
+        if (name.equals(currentBranch())) {
+            System.out.println("Cannot delete branch '" + name + "': it is the current branch.");
+            return;
+        }
+        deleteRef(RefDatabase.HEADS, "branch", name);
+    }
+
+    /**
+     * Lists the tags.
+     */
+    public void listTags() {
+        listRefs(RefDatabase.TAGS, null);
+    }
+
+    /**
+     * Creates a lightweight tag.
+     *
+     * @param name   The short name of the tag.
+     * @param target The commit to tag, as a ref name or hash, or null for the current commit.
+     */
+    public void createTag(String name, String target) {
+        createRef(RefDatabase.TAGS, "tag", name, target);
+    }
+
+    /**
+     * Deletes a tag.
+     *
+     * @param name The short name of the tag.
+     */
+    public void deleteTag(String name) {
+        deleteRef(RefDatabase.TAGS, "tag", name);
+    }
+
+    /**
+     * Prints the short names of the refs under a prefix, in name order.
+     *
+     * @param prefix  The prefix, e.g. {@code refs/heads/}.
+     * @param current The short name to mark with {@code *}, or null.
+     */
+    private void listRefs(String prefix, String current) {
+        PrintWriter out = bufferedOutput();
+        try {
+            for (String name : refs.list(prefix).keySet()) {
+                String shortName = name.substring(prefix.length());
+                out.println(current == null ? shortName : (shortName.equals(current) ? "* " : "  ") + shortName);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading refs: " + e.getMessage());
+        }
+        out.flush();
+    }
+
+    /**
+     * Creates a branch or tag pointing at a commit, unless one of that name exists.
+     *
+     * @param prefix The prefix of the ref, e.g. {@code refs/heads/}.
+     * @param kind   The kind of ref, for messages.
+     * @param name   The short name.
+     * @param target The commit, as a ref name or hash, or null for the current commit.
+     */
+    private void createRef(String prefix, String kind, String name, String target) {
+        String refName = prefix + name;
+        if (!RefDatabase.isValidName(refName)) {
+            System.out.println("'" + name + "' is not a valid " + kind + " name.");
+            return;
+        }
+        Commit commit = target != null ? resolveCommit(target) : head();
+        if (commit == null) {
+            if (target == null) {
+                System.out.println("No commits yet.");
+            }
+            return;
+        }
+        try {
+            if (refs.exists(refName)) {
+                System.out.println("A " + kind + " named '" + name + "' already exists.");
+                return;
+            }
+            refs.create(refName, commit.getId());
+            System.out.println("Created " + kind + " " + name + " at commit " + commit.getId());
+        } catch (IOException e) {
+            System.err.println("Error creating " + kind + " " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes a branch or tag.
+     *
+     * @param prefix The prefix of the ref, e.g. {@code refs/tags/}.
+     * @param kind   The kind of ref, for messages.
+     * @param name   The short name.
+     */
+    private void deleteRef(String prefix, String kind, String name) {
+        String refName = prefix + name;
+        try {
+            if (RefDatabase.isValidName(refName) && refs.delete(refName)) {
+                System.out.println("Deleted " + kind + " " + name);
+            } else {
+                System.out.println(Character.toUpperCase(kind.charAt(0)) + kind.substring(1) + " '" + name + "' not found.");
+            }
+        } catch (IOException e) {
+            System.err.println("Error deleting " + kind + " " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Switches to a branch, or reverts the repository to the specified commit.
+     *
+     * Checking out a branch makes HEAD point to it, so the next commit advances
+     * the branch. Anything else (a tag, a commit hash) detaches HEAD at that commit.
+     * Nothing is changed, HEAD included, if the checkout would overwrite local
+     * changes to files that differ between the two commits.
+     *
+     * @param target The name of a branch, a tag, or the hash of a commit or a unique
+     *               prefix of at least four characters.
+     */
+    public void checkout(String target) {
+        String branch = isBranch(target) ? RefDatabase.HEADS + target : null;
+        Commit commit = resolveCommit(branch != null ? branch : target);
+        if (commit == null || !switchTo(commit, "checkout")) {
+            return;
+        }
+        try {
+            if (branch != null) {
+                refs.link("HEAD", branch);
+            } else {
+                refs.update("HEAD", commit.getId());
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving HEAD: " + e.getMessage());
+        }
+
+        System.out.println(branch != null ? "Switched to branch '" + target + "'" : "Checked out commit " + target);
+        System.out.println("Repository is now at commit:");
+        System.out.println(commit);
+    }
+
+    /**
+     * Makes a commit the current commit, updating the working tree and the
+     * index to match it. HEAD itself is not written.
+     *
+     * Only the files that differ between the current commit and the target are
+     * touched: the two trees are compared directory by directory, skipping every
+     * subtree whose id is the same on both sides, and files that were added or
+     * modified are written while files that no longer exist are deleted. Index
+     * entries and working tree files of all other paths are left as they are,
+     * so switching between nearby commits costs time proportional to the
+     * change, not to the size of the tree. Before anything is written, those
+     * files are checked for staged or unstaged changes that would be lost, and
+     * every blob to be written is checked to be in the object store.
+     *
+     * If a file still cannot be written, the switch is reported as incomplete:
+     * the index is saved as the working tree now is, but the current commit
+     * stays the same, so the files already switched show up as changes.
+     *
+     * @param commit    The commit to switch to.
+     * @param operation The command switching, for messages.
+     * @return true if the commit is now the current commit; false if the
+     *         commit's trees or blobs could not be read or local changes would
+     *         be overwritten, in which case nothing was changed, or if the
+     *         switch is incomplete.
+     */
+    private boolean switchTo(Commit commit, String operation) {
+        ObjectId fromTree = head() != null ? head().getTreeId() : null;
+        HashMap<String, ObjectId> visitedTrees = new HashMap<>();
+        List<DiffEntry> changes;
+        try {
+            changes = new TreeDiff(objectStore).onNewTree(visitedTrees::put)
+                    .diff(fromTree, commit.getTreeId());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading tree of commit " + commit.getId() + ": " + e.getMessage());
+            return false;
+        }
+        if (!checkLocalChanges(changes, operation)) {
+            return false;
+        }
+        for (DiffEntry change : changes) {
+            if (change.getNewId() != null && !objectStore.contains(change.getNewId())) {
+                System.err.println("Content not found for file: " + change.getNewPath()
+                        + " (hash: " + change.getNewId() + ")");
+                return false;
+            }
+        }
+        // If the index matched the old commit exactly, it matches the new one
+        // afterwards and every tree visited on the new side can stay cached.
+        boolean indexClean = fromTree != null && fromTree.equals(index().getCachedTree(""));
+
+        // Deletions first, so a file replaced by a directory (or the reverse) is out of the way
+        TreeMap<String, DiffEntry> writes = new TreeMap<>();
+        for (DiffEntry change : changes) {
+            if (change.getType() == DiffEntry.ChangeType.DELETE) {
+                removeWorkingFile(change.getOldPath());
+            } else {
+                writes.put(change.getNewPath(), change);
+            }
+        }
+        if (!restoreFiles(writes)) {
+            saveIndex();
+            System.out.println("Could not complete " + operation + "; HEAD still points to commit "
+                    + (head() != null ? head().getId() : "none") + ".");
+            return false;
+        }
+        if (indexClean) {
+            visitedTrees.forEach(index()::putCachedTree);
+        }
+
+        currentCommit = commit;
+        headLoaded = true;
+        saveIndex();
+        return true;
+    }
+
+    /**
+     * Writes files from the object store into the working tree and stages them.
+     *
+     * All parent directories are created first, in sorted order, so that the
+     * files can then be inflated and written by a pool of
+     * {@code checkout.workers} threads (default: one per processor) without
+     * racing on directory creation. Checkouts of fewer than
+     * {@code checkout.thresholdForParallelism} files (default 100) are written
+     * on the calling thread. Results are reported and staged in path order.
+     *
+     * @param files The change that writes each file, by path; its new side
+     *              gives the blob id and mode.
+     * @return true if every file was written.
+     */
+    private boolean restoreFiles(SortedMap<String, DiffEntry> files) {
+        long start = Trace.start();
+        Path root = Paths.get(path);
+        TreeSet<Path> dirs = new TreeSet<>();
+        for (String fileName : files.keySet()) {
+            Path parent = root.resolve(fileName).getParent();
+            if (parent != null) {
+                dirs.add(parent);
+            }
+        }
+        for (Path dir : dirs) {
+            try {
+                Files.createDirectories(dir);
+            } catch (IOException e) {
+                System.err.println("Error creating directory " + dir + ": " + e.getMessage());
+            }
+        }
+
+        List<Callable<IndexEntry>> tasks = new ArrayList<>(files.size());
+        for (var file : files.entrySet()) {
+            tasks.add(() -> restoreFile(root, file.getKey(), file.getValue().getNewId(), file.getValue().getNewMode()));
+        }
+        int workers = config.getInt("checkout", "workers", 0);
+        if (workers < 1) {
+            workers = Runtime.getRuntime().availableProcessors();
+        }
+        List<Future<IndexEntry>> results;
+        if (workers > 1 && tasks.size() >= config.getInt("checkout", "thresholdForParallelism", 100)) {
+            try (ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, tasks.size()))) {
+                results = pool.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("Checkout interrupted");
+                return false;
+            }
+        } else {
+            results = new ArrayList<>(tasks.size());
+            for (Callable<IndexEntry> task : tasks) {
+                FutureTask<IndexEntry> result = new FutureTask<>(task);
+                result.run();
+                results.add(result);
+            }
+        }
+
+        boolean complete = true;
+        int i = 0;
+        for (var file : files.entrySet()) {
+            String fileName = file.getKey();
+            try {
+                IndexEntry entry = results.get(i++).get();
+                if (entry != null) {
+                    index().put(entry);
+                    System.out.println("Restored file: " + fileName);
+                } else {
+                    System.err.println("Content not found for file: " + fileName + " (hash: " + file.getValue().getNewId() + ")");
+                    complete = false;
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Error restoring file " + fileName + ": " + cause.getMessage());
+                complete = false;
+            }
+        }
+        Trace.end("restore " + files.size() + " files", start);
+        return complete;
+    }
+
+    /**
+     * Writes one file from the object store into the working tree.
+     * Its parent directory must already exist. Safe to call from several threads.
+     *
+     * @param root     The root of the working tree.
+     * @param fileName The {@code /}-separated path of the file.
+     * @param fileId   The id of the file's blob.
+     * @param mode     The mode of the file, {@link IndexEntry#MODE_EXECUTABLE}
+     *                 to make it executable.
+     * @return The index entry for the written file, or null if the blob is not in the store.
+     * @throws IOException If the blob could not be read or the file could not be written.
+     */
+    private IndexEntry restoreFile(Path root, String fileName, ObjectId fileId, int mode) throws IOException {
+        Path file = root.resolve(fileName);
+        if (!objectStore.copyTo(fileId, file)) {
+            return null;
+        }
+        if (mode == IndexEntry.MODE_EXECUTABLE) {
+            WorkingTree.setExecutable(file, true);
+        }
+        return IndexEntry.of(fileName, fileId, file, WorkingTree.readAttributes(file));
+    }
+
+    /**
+     * Deletes a file from the working tree and the index, along with any
+     * directories the deletion leaves empty.
+     *
+     * @param fileName The {@code /}-separated path of the file.
+     */
+    private void removeWorkingFile(String fileName) {
+        index().remove(fileName);
+        Path root = Paths.get(path).toAbsolutePath().normalize();
+        Path file = root.resolve(fileName);
+        try {
+            Files.deleteIfExists(file);
+            System.out.println("Removed file: " + fileName);
+            for (Path dir = file.getParent(); dir != null && !dir.equals(root); dir = dir.getParent()) {
+                try (var children = Files.list(dir)) {
+                    if (children.findAny().isPresent()) {
+                        break;
+                    }
+                }
+                Files.delete(dir);
+            }
+        } catch (IOException e) {
+            System.err.println("Error removing file " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Merges another commit into the current one.
+     *
+     * The merge base is found with {@link MergeBase}. If the other commit is
+     * already part of the history nothing happens, and if the current commit is
+     * the merge base the current commit is fast-forwarded to the other one.
+     * Otherwise both commits' trees are compared with the merge base's tree, and
+     * each file changed on the other side only is taken from it. Files changed
+     * on both sides are merged line by line with {@link ThreeWayMerge}, on
+     * several threads when there are at least
+     * {@code merge.thresholdForParallelism} of them (default 100). File modes
+     * are merged separately: a side that kept the base's mode takes the other
+     * side's, and different mode changes on both sides are a conflict. If every file
+     * merged cleanly the result is committed with both commits as parents.
+     * Otherwise the conflicts are left in the working tree, the other commit is
+     * recorded in {@code .git/MERGE_HEAD}, and the next commit concludes the
+     * merge. When there are several merge bases, the newest one is used.
+     *
+     * The merge is refused if changes are staged or if it would overwrite local
+     * changes to a file.
+     *
+     * @param commitHash The hash of the commit to merge, or a unique prefix of at least four characters.
+     * @param author     The author of the merge commit.
+     */
+    public void merge(String commitHash, String author) {
+        Commit ours = head();
+        if (ours == null) {
+            System.out.println("No commits yet.");
+            return;
+        }
+        if (readMergeHead() != null) {
+            System.out.println("A merge is already in progress. Commit its result first.");
+            return;
+        }
+        Commit theirs = resolveCommit(commitHash);
+        if (theirs == null) {
+            return;
+        }
+        if (!stagedChanges().isEmpty()) {
+            System.out.println("Cannot merge: there are staged changes. Commit them first.");
+            return;
+        }
+
+        long start = Trace.start();
+        List<ObjectId> bases = new MergeBase(commitGraph(), this::readCommit).find(ours.getId(), theirs.getId());
+        Trace.end("merge-base", start);
+        if (bases.contains(theirs.getId())) {
+            System.out.println("Already up to date.");
+            return;
+        }
+        Commit base = bases.isEmpty() ? null : readCommit(bases.get(0));
+        ObjectId baseTree = base != null ? base.getTreeId() : null;
+
+        TreeDiff treeDiff = new TreeDiff(objectStore);
+        HashMap<String, DiffEntry> ourChanges = new HashMap<>();
+        List<DiffEntry> theirChanges;
+        try {
+            if (bases.contains(ours.getId())) {
+                if (switchTo(theirs, "merge")) {
+                    saveHEAD();
+                    System.out.println("Fast-forward to commit " + theirs.getId());
+                }
+                return;
+            }
+            for (DiffEntry change : treeDiff.diff(baseTree, ours.getTreeId())) {
+                ourChanges.put(change.getPath(), change);
+            }
+            theirChanges = treeDiff.diff(baseTree, theirs.getTreeId());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error comparing trees: " + e.getMessage());
+            return;
+        }
+
+        TreeMap<String, DiffEntry> writes = new TreeMap<>();
+        List<String> deletions = new ArrayList<>();
+        List<DiffEntry[]> contentMerges = new ArrayList<>();  // our and their change of each file
+        HashMap<String, Integer> mergedModes = new HashMap<>();
+        List<DiffEntry> touched = new ArrayList<>();  // with HEAD's version of each file on the old side
+        TreeSet<String> conflicts = new TreeSet<>();
+        for (DiffEntry their : theirChanges) {
+            String fileName = their.getPath();
+            DiffEntry our = ourChanges.get(fileName);
+            if (our == null) {
+                // Files we did not change are the same in HEAD as in the base
+                touched.add(their);
+                if (their.getType() == DiffEntry.ChangeType.DELETE) {
+                    deletions.add(fileName);
+                } else {
+                    writes.put(fileName, their);
+                }
+            } else if (Objects.equals(our.getNewId(), their.getNewId())) {
+                // Same content on both sides; only the modes can differ
+                int mode = mergeMode(their.getOldMode(), our.getNewMode(), their.getNewMode());
+                if (mode < 0) {
+                    printModeConflict(fileName, commitHash);
+                    conflicts.add(fileName);
+                } else if (mode != our.getNewMode()) {
+                    touched.add(DiffEntry.modified(fileName, our.getNewId(), our.getNewMode(),
+                            their.getNewId(), their.getNewMode()));
+                    writes.put(fileName, their);
+                }
+            } else if (our.getType() == DiffEntry.ChangeType.DELETE || their.getType() == DiffEntry.ChangeType.DELETE) {
+                System.out.println("CONFLICT (modify/delete): " + fileName + " deleted in "
+                        + (our.getType() == DiffEntry.ChangeType.DELETE ? "HEAD" : commitHash)
+                        + " and modified in " + (our.getType() == DiffEntry.ChangeType.DELETE ? commitHash : "HEAD")
+                        + ". The HEAD side was kept.");
+                conflicts.add(fileName);
+            } else {
+                contentMerges.add(new DiffEntry[] {our, their});
+                mergedModes.put(fileName, mergeMode(their.getOldMode(), our.getNewMode(), their.getNewMode()));
+                touched.add(DiffEntry.modified(fileName, our.getNewId(), our.getNewMode(),
+                        their.getNewId(), their.getNewMode()));
+            }
+        }
+        if (!checkLocalChanges(touched, "merge")) {
+            return;
+        }
+
+        // Merge contents before touching the working tree, so a missing blob aborts cleanly
+        start = Trace.start();
+        ThreeWayMerge merger = new ThreeWayMerge(diffAlgorithm(null), "HEAD", commitHash);
+        ConcurrentSkipListMap<String, ThreeWayMerge.Result> merged = new ConcurrentSkipListMap<>();
+        var stream = contentMerges.size() >= config.getInt("merge", "thresholdForParallelism", 100)
+                ? contentMerges.parallelStream() : contentMerges.stream();
+        stream.forEach(change -> {
+            String fileName = change[0].getPath();
+            try {
+                merged.put(fileName, merger.merge(blobText(change[1].getOldId()), blobText(change[0].getNewId()),
+                        blobText(change[1].getNewId())));
+            } catch (IOException e) {
+                System.err.println("Error reading versions of " + fileName + ": " + e.getMessage());
+            }
+        });
+        Trace.end("merge " + contentMerges.size() + " files", start);
+        boolean complete = merged.size() == contentMerges.size();
+        for (DiffEntry their : writes.values()) {
+            if (!objectStore.contains(their.getNewId())) {
+                System.err.println("Content not found for file: " + their.getPath() + " (hash: " + their.getNewId() + ")");
+                complete = false;
+            }
+        }
+        if (!complete) {
+            System.out.println("Merge aborted.");
+            return;
+        }
+
+        for (String fileName : deletions) {
+            removeWorkingFile(fileName);
+        }
+        if (!restoreFiles(writes)) {
+            saveIndex();
+            System.out.println("Merge aborted.");
+            return;
+        }
+        Path root = Path.of(path).toAbsolutePath().normalize();
+        for (var result : merged.entrySet()) {
+            String fileName = result.getKey();
+            System.out.println("Auto-merging " + fileName);
+            if (result.getValue().getContent() == null) {
+                System.out.println("CONFLICT (content): Binary files differ in " + fileName
+                        + ". Version HEAD left in tree.");
+                conflicts.add(fileName);
+                continue;
+            }
+            Path file = root.resolve(fileName);
+            int mode = mergedModes.get(fileName);
+            try {
+                Files.write(file, result.getValue().getContent());
+                if (mode >= 0) {
+                    WorkingTree.setExecutable(file, mode == IndexEntry.MODE_EXECUTABLE);
+                } else {
+                    printModeConflict(fileName, commitHash);
+                    conflicts.add(fileName);
+                }
+                if (result.getValue().hasConflicts()) {
+                    System.out.println("CONFLICT (content): Merge conflict in " + fileName);
+                    conflicts.add(fileName);
+                } else if (mode >= 0) {
+                    index().put(IndexEntry.of(fileName, objectStore.writeBlob(file), file,
+                            WorkingTree.readAttributes(file)));
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing merged file " + fileName + ": " + e.getMessage());
+                conflicts.add(fileName);
+            }
+        }
+        saveIndex();
+
+        try {
+            Files.writeString(mergeHeadPath(), theirs.getId().name() + "\n");
+        } catch (IOException e) {
+            System.err.println("Error saving MERGE_HEAD: " + e.getMessage());
+            return;
+        }
+        if (conflicts.isEmpty()) {
+            commit("Merge " + (isBranch(commitHash) ? "branch '" + commitHash + "'" : "commit " + commitHash), author);
+        } else {
+            System.out.println("Automatic merge failed; fix conflicts in the following files, add them and commit the result:");
+            for (String fileName : conflicts) {
+                System.out.println("    " + fileName);
+            }
+        }
+    }
+
+    /**
+     * Merges the modes of a file the way git does: a side that kept the base's
+     * mode takes the other side's.
+     *
+     * @param base   The mode in the merge base, 0 if the file was not there.
+     * @param ours   Our mode.
+     * @param theirs Their mode.
+     * @return The merged mode, or -1 if both sides changed the mode differently.
+     */
+    private static int mergeMode(int base, int ours, int theirs) {
+        if (ours == theirs || theirs == base) {
+            return ours;
+        }
+        if (ours == base) {
+            return theirs;
+        }
+        return -1;
+    }
+
+    /**
+     * Reports a file whose mode was changed differently on both sides of a merge.
+     *
+     * @param fileName The path of the file.
+     * @param other    The branch or commit being merged.
+     */
+    private static void printModeConflict(String fileName, String other) {
+        System.out.println("CONFLICT (mode): " + fileName + " has different modes in HEAD and " + other
+                + ". The HEAD mode was kept.");
+    }
+
+    /**
+     * Checks that the index and the working tree have no changes an operation
+     * would overwrite: a staged file whose index entry differs from the current
+     * commit, a tracked file that differs from its index entry, or an untracked
+     * file in the way.
+     *
+     * @param changes   The changes the operation makes to files, with the
+     *                  current commit's version of each file on the old side.
+     * @param operation The command making the changes, for the message.
+     * @return true if the operation can go ahead; otherwise the files are listed.
+     */
+    private boolean checkLocalChanges(List<DiffEntry> changes, String operation) {
+        Path root = Path.of(path).toAbsolutePath().normalize();
+        TreeSet<String> changed = new TreeSet<>();
+        for (DiffEntry change : changes) {
+            String fileName = change.getPath();
+            IndexEntry entry = index().get(fileName);
+            if (entry == null ? change.getOldId() != null
+                    : !entry.getId().equals(change.getOldId()) || entry.getMode() != change.getOldMode()) {
+                changed.add(fileName);
+                continue;
+            }
+            Path file = root.resolve(fileName);
+            if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS)) {
+                continue;
+            }
+            try {
+                if (entry == null) {
+                    changed.add(fileName);
+                } else if (!index().isUpToDate(entry, file, WorkingTree.readAttributes(file))
+                        && !entry.getId().equals(ObjectId.fromRaw(Hasher.digest(hashAlgorithm, file, "blob")))) {
+                    changed.add(fileName);
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + fileName + " - " + e.getMessage());
+                changed.add(fileName);
+            }
+        }
+        if (changed.isEmpty()) {
+            return true;
+        }
+        System.out.println("Your local changes to the following files would be overwritten by " + operation + ":");
+        for (String fileName : changed) {
+            System.out.println("    " + fileName);
+        }
+        return false;
+    }
+
+    /**
+     * Packs the commits reachable from the current commit and from every branch
+     * and tag, through any parent, with all of their trees and blobs, into a
+     * single pack file, and rewrites the commit-graph for them. The refs
+     * themselves are moved into {@code packed-refs}.
+     * Each version of a file or directory is delta-compressed against the next newer
+     * version at the same path, so long-lived files cost little more than their changes.
+     *
+     * @param maxDepth The maximum length of a delta chain.
+     */
+    public void repack(int maxDepth) {
+        List<Commit> reachable = new ArrayList<>();
+        HashSet<ObjectId> seenCommits = new HashSet<>();
+        ArrayDeque<Commit> pending = new ArrayDeque<>();
+        if (head() != null) {
+            pending.add(head());
+            seenCommits.add(head().getId());
+        }
+        try {
+            for (ObjectId tip : refs.list("refs/").values()) {
+                Commit commit = seenCommits.add(tip) ? readCommit(tip) : null;
+                if (commit != null) {
+                    pending.add(commit);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading refs: " + e.getMessage());
+            return;
+        }
+        while (!pending.isEmpty()) {
+            Commit commit = pending.poll();
+            reachable.add(commit);
+            for (ObjectId parentId : commit.getParentIds()) {
+                if (seenCommits.add(parentId)) {
+                    Commit parent = readCommit(parentId);
+                    if (parent != null) {
+                        pending.add(parent);
+                    }
+                }
+            }
+        }
+
+        LinkedHashMap<String, List<ObjectId>> histories = new LinkedHashMap<>();
+        HashSet<ObjectId> seenTrees = new HashSet<>();
+        try {
+            for (Commit commit : reachable) {
+                collectVersions(commit.getTreeId(), "", histories, seenTrees);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading trees: " + e.getMessage());
+            return;
+        }
+        List<List<ObjectId>> groups = new ArrayList<>(histories.values());
+        List<ObjectId> commitIds = new ArrayList<>();
+        for (Commit commit : reachable) {
+            commitIds.add(commit.getId());
+        }
+        groups.add(commitIds);
+
+        try {
+            int count = objectStore.repack(groups, maxDepth);
+            writeCommitGraph(reachable);
+            System.out.println("Packed " + count + " objects.");
+        } catch (IOException e) {
+            System.err.println("Error repacking objects: " + e.getMessage());
+            return;
+        }
+        try {
+            System.out.println("Packed " + refs.pack() + " refs.");
+        } catch (IOException e) {
+            System.err.println("Error packing refs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records the versions of a tree, its subtrees and its files by path.
+     * A subtree that was already visited is identical wherever it occurs, so it
+     * is not read again.
+     *
+     * @param treeId    The id of the tree.
+     * @param prefix    The path of the tree followed by {@code /}, or empty for the root.
+     * @param histories The versions of each path, in the order they are first seen.
+     * @param seenTrees The trees visited so far.
+     * @throws IOException If a tree could not be read.
+     */
+    private void collectVersions(ObjectId treeId, String prefix, Map<String, List<ObjectId>> histories,
+                                 Set<ObjectId> seenTrees) throws IOException {
+        if (!seenTrees.add(treeId)) {
+            return;
+        }
+        histories.computeIfAbsent(prefix, _ -> new ArrayList<>()).add(treeId);
+        String content = objectStore.read(treeId);
+        if (content == null) {
+            throw new IOException("Tree not found: " + treeId);
+        }
+        for (Tree.Entry entry : Tree.parse(treeId, content).getEntries()) {
+            String entryPath = prefix + entry.getName();
+            if (entry.isTree()) {
+                collectVersions(entry.getId(), entryPath + "/", histories, seenTrees);
+            } else {
+                List<ObjectId> versions = histories.computeIfAbsent(entryPath, _ -> new ArrayList<>());
+                if (!versions.contains(entry.getId())) {
+                    versions.add(entry.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the current state of the index file.
+     *
+     * This method writes the staged entries, with their blob ids and stat data,
+     * to the binary index file (see {@link Index}).
+     */
+    private void saveIndex() {
+        try {
+            index().save();
+        } catch (IOException e) {
+            System.err.println("Error saving index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the index, loading it on first use.
+     *
+     * @return The index.
+     */
+    private Index index() {
+        if (index == null) {
+            loadIndex();
+        }
+        return index;
+    }
+
+    /**
+     * Loads the index from the saved state.
+     *
+     * This method reads the binary index file. If it is missing or unreadable the
+     * repository starts with an empty index.
+     */
+    private void loadIndex() {
+        long start = Trace.start();
+        Path indexFile = Path.of(path, ".git", "index");
+        try {
+            index = Index.load(indexFile, hashAlgorithm);
+        } catch (IOException e) {
+            System.err.println("Error loading index: " + e.getMessage());
+            index = Index.empty(indexFile, hashAlgorithm);
+        }
+        Trace.end("load index (" + index.size() + " entries)", start);
+    }
+
+    /**
+     * Reads a commit from the object store.
+     * Commits are immutable, so each one is parsed at most once per run.
+     *
+     * @param id The id of the commit.
+     * @return The commit, or null if no commit with that id is stored.
+     */
+    private Commit readCommit(ObjectId id) {
+        Commit commit = commits.get(id);
+        if (commit != null) {
+            return commit;
+        }
+        try (ObjectStream in = objectStore.open(id)) {
+            if (in == null || !in.getType().equals("commit")) {
+                return null;
+            }
+            commit = Commit.parse(id, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading commit " + id + ": " + e.getMessage());
+            return null;
+        }
+        commits.put(id, commit);
+        return commit;
+    }
+
+    /**
+     * Resolves a ref name or a full or abbreviated commit hash, reporting unknown
+     * and ambiguous hashes.
+     *
+     * Names of existing refs win, looked up as in {@link #resolveRef}. A full hash
+     * is looked up directly. A shorter prefix is matched against the
+     * loose objects in one fan-out directory and by binary search in the pack
+     * indexes, and must match exactly one commit.
+     *
+     * @param commitHash The ref name, the hash, or a prefix of at least four hexadecimal characters.
+     * @return The commit, or null if none or more than one commit matches.
+     */
+    private Commit resolveCommit(String commitHash) {
+        ObjectId refId = resolveRef(commitHash);
+        if (refId != null) {
+            Commit commit = readCommit(refId);
+            if (commit == null) {
+                System.out.println("Ref " + commitHash + " does not point to a commit.");
+            }
+            return commit;
+        }
+        if (ObjectId.isHex(commitHash) && commitHash.length() == hashAlgorithm.getHexLength()) {
+            Commit commit = readCommit(ObjectId.fromHex(commitHash));
+            if (commit == null) {
+                System.out.println("Commit with hash " + commitHash + " not found.");
+            }
+            return commit;
+        }
+        if (!ObjectId.isAbbreviation(commitHash)) {
+            System.out.println("Commit with hash " + commitHash + " not found.");
+            return null;
+        }
+
+        List<Commit> candidates = new ArrayList<>();
+        try {
+            for (ObjectId id : objectStore.findByPrefix(commitHash)) {
+                Commit commit = readCommit(id);
+                if (commit != null) {
+                    candidates.add(commit);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error resolving " + commitHash + ": " + e.getMessage());
+            return null;
+        }
+        if (candidates.isEmpty()) {
+            System.out.println("Commit with hash " + commitHash + " not found.");
+            return null;
+        }
+        if (candidates.size() > 1) {
+            System.out.println("Commit hash " + commitHash + " is ambiguous. Candidates:");
+            for (Commit commit : candidates) {
+                System.out.println("    " + commit.getId() + " " + commit.getMessage().lines().findFirst().orElse(""));
+            }
+            return null;
+        }
+        return candidates.get(0);
+    }
+
+    /**
+     * Looks a name up as a ref: as given if it is {@code HEAD} or starts with
+     * {@code refs/}, then under {@code refs/}, {@code refs/tags/} and
+     * {@code refs/heads/}, in the same order as git.
+     *
+     * @param name The name.
+     * @return The id the first existing ref points to, or null if no ref matches.
+     */
+    private ObjectId resolveRef(String name) {
+        for (String candidate : List.of(name, "refs/" + name, RefDatabase.TAGS + name, RefDatabase.HEADS + name)) {
+            if (!candidate.equals("HEAD")
+                    && (!candidate.startsWith("refs/") || !RefDatabase.isValidName(candidate))) {
+                continue;
+            }
+            try {
+                ObjectId id = refs.resolve(candidate);
+                if (id != null) {
+                    return id;
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading ref " + candidate + ": " + e.getMessage());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the commit-graph file for the given commits.
+     *
+     * @param reachable The commits to record.
+     * @throws IOException If the file could not be written.
+     */
+    private void writeCommitGraph(List<Commit> reachable) throws IOException {
+        List<CommitGraph.Entry> entries = new ArrayList<>(reachable.size());
+        for (Commit commit : reachable) {
+            entries.add(new CommitGraph.Entry(commit.getId(), commit.getTreeId(), commit.getParentIds(),
+                    commit.getTimestamp().getEpochSecond()));
+        }
+        CommitGraph.write(commitGraphPath(), entries, hashAlgorithm);
+        commitGraph = null;
+    }
+
+    /**
+     * Returns the commit-graph, mapping the file on first use.
+     *
+     * @return The commit-graph, or null if it does not exist or could not be read.
+     */
+    private CommitGraph commitGraph() {
+        if (commitGraph == null) {
+            try {
+                commitGraph = CommitGraph.open(commitGraphPath(), hashAlgorithm);
+            } catch (IOException e) {
+                System.err.println("Error reading commit-graph: " + e.getMessage());
+            }
+        }
+        return commitGraph;
+    }
+
+    private Path commitGraphPath() {
+        return Path.of(path, ".git", "objects", "info", "commit-graph");
+    }
+
+    private Path mergeHeadPath() {
+        return Path.of(path, ".git", "MERGE_HEAD");
+    }
+
+    /**
+     * Returns the commit being merged, as recorded by a merge that stopped on conflicts.
+     *
+     * @return The id stored in {@code .git/MERGE_HEAD}, or null if no merge is in progress.
+     */
+    private ObjectId readMergeHead() {
+        try {
+            String mergeHash = Files.readString(mergeHeadPath()).trim();
+            return ObjectId.isHex(mergeHash) ? ObjectId.fromHex(mergeHash) : null;
+        } catch (IOException _) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves the current state of the HEAD pointer.
+     *
+     * The HEAD pointer identifies the current commit. If HEAD points to a branch
+     * the branch is moved to the current commit, otherwise HEAD itself is. Either
+     * way the ref is updated atomically through its lock file (see
+     * {@link RefDatabase}), and costs the same no matter how long the history is.
+     *
+     * @return false if the ref could not be updated, e.g. because it is locked.
+     */
+    private boolean saveHEAD() {
+        if (currentCommit == null) {
+            return true;
+        }
+        try {
+            String branch = refs.getTarget("HEAD");
+            refs.update(branch != null ? branch : "HEAD", currentCommit.getId());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving HEAD: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the current commit, reading HEAD on first use.
+     *
+     * @return The current commit, or null if there are no commits yet.
+     */
+    private Commit head() {
+        if (!headLoaded) {
+            headLoaded = true;
+            loadHEAD();
+        }
+        return currentCommit;
+    }
+
+    /**
+     * Loads the state of the HEAD pointer.
+     *
+     * This method resolves {@code .git/HEAD}, through the branch it points to
+     * if any, and reads that commit from the object store. The rest of the
+     * history is read on demand. HEAD pointing to a branch without commits
+     * means there are no commits yet.
+     */
+    private void loadHEAD() {
+        long start = Trace.start();
+        try {
+            ObjectId headId = refs.resolve("HEAD");
+            if (headId != null) {
+                currentCommit = readCommit(headId);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading HEAD: " + e.getMessage());
+        }
+        Trace.end("load HEAD", start);
+    }
+
+    /**
+     * Returns the branch HEAD points to.
+     *
+     * @return The short name of the branch, or null if HEAD is detached.
+     */
+    private String currentBranch() {
+        try {
+            String target = refs.getTarget("HEAD");
+            if (target != null && target.startsWith(RefDatabase.HEADS)) {
+                return target.substring(RefDatabase.HEADS.length());
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading HEAD: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a name is the short name of an existing branch.
+     *
+     * @param name The name.
+     * @return true if {@code refs/heads/<name>} exists.
+     */
+    private boolean isBranch(String name) {
+        try {
+            return RefDatabase.isValidName(RefDatabase.HEADS + name) && refs.exists(RefDatabase.HEADS + name);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The line diff algorithms, selectable with {@code --diff-algorithm} or the
+ * {@code diff.algorithm} config key using the same names as git.
+ *
+ * Both work on sequences of interned line ids (see {@link LineInterner}), so
+ * comparing two lines is a single int comparison however long the lines are.
+ */
+public enum DiffAlgorithm {
+    /** A minimal edit script, computed with {@link MyersDiff}. */
+    MYERS("myers") {
+        @Override
+        void diff(int[] a, int[] b, int lineCount, List<Edit> edits) {
+            MyersDiff.diff(a, 0, a.length, b, 0, b.length, edits);
+        }
+    },
+    /** Edits anchored on rare lines, computed with {@link HistogramDiff}. */
+    HISTOGRAM("histogram") {
+        @Override
+        void diff(int[] a, int[] b, int lineCount, List<Edit> edits) {
+            HistogramDiff.diff(a, b, lineCount, edits);
+        }
+    };
+
+    private final String name;
+
+    DiffAlgorithm(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Looks up an algorithm by name.
+     *
+     * @param name The name, e.g. "myers" or "histogram".
+     * @return The algorithm.
+     * @throws IllegalArgumentException If no algorithm has that name.
+     */
+    public static DiffAlgorithm fromName(String name) {
+        for (DiffAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown diff algorithm: " + name);
+    }
+
+    /**
+     * Returns the name of the algorithm.
+     *
+     * @return The name used in config and on the command line.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Computes the edits turning one text into another.
+     *
+     * @param a The old text.
+     * @param b The new text.
+     * @return The edits, sorted and non-adjacent.
+     */
+    public List<Edit> diff(Text a, Text b) {
+        LineInterner interner = new LineInterner();
+        int[] aIds = interner.intern(a);
+        int[] bIds = interner.intern(b);
+        List<Edit> edits = new ArrayList<>();
+        diff(aIds, bIds, interner.size(), edits);
+        return edits;
+    }
+
+    /**
+     * Computes the edits between two sequences of line ids.
+     *
+     * @param a         The old sequence.
+     * @param b         The new sequence.
+     * @param lineCount One more than the largest id in either sequence.
+     * @param edits     The list receiving the edits, in order.
+     */
+    abstract void diff(int[] a, int[] b, int lineCount, List<Edit> edits);
+}
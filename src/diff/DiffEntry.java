@@ -0,0 +1,199 @@
+package diff;
+
+import objects.ObjectId;
+
+/**
+ * One file that differs between two trees.
+ *
+ * Added files have no old side and deleted files no new side. Renamed and
+ * copied files have both sides under different paths, and a similarity score
+ * saying how much of the content was kept; they are only reported by
+ * {@link RenameDetector}, which pairs additions with deleted or modified files.
+ */
+public final class DiffEntry {
+    /** The kind of change. */
+    public enum ChangeType {
+        ADD, MODIFY, DELETE, RENAME, COPY
+    }
+
+    private final ChangeType type;
+    private final String oldPath;
+    private final String newPath;
+    private final ObjectId oldId;
+    private final ObjectId newId;
+    private final int oldMode;
+    private final int newMode;
+    private final int score;
+
+    private DiffEntry(ChangeType type, String oldPath, ObjectId oldId, int oldMode,
+                      String newPath, ObjectId newId, int newMode) {
+        this(type, oldPath, oldId, oldMode, newPath, newId, newMode, 0);
+    }
+
+    private DiffEntry(ChangeType type, String oldPath, ObjectId oldId, int oldMode,
+                      String newPath, ObjectId newId, int newMode, int score) {
+        this.type = type;
+        this.oldPath = oldPath;
+        this.newPath = newPath;
+        this.oldId = oldId;
+        this.newId = newId;
+        this.oldMode = oldMode;
+        this.newMode = newMode;
+        this.score = score;
+    }
+
+    /**
+     * Creates the entry for an added file.
+     *
+     * @param path The path of the file.
+     * @param id   The id of its blob.
+     * @param mode Its mode.
+     * @return The entry.
+     */
+    public static DiffEntry added(String path, ObjectId id, int mode) {
+        return new DiffEntry(ChangeType.ADD, null, null, 0, path, id, mode);
+    }
+
+    /**
+     * Creates the entry for a deleted file.
+     *
+     * @param path The path of the file.
+     * @param id   The id of its blob.
+     * @param mode Its mode.
+     * @return The entry.
+     */
+    public static DiffEntry deleted(String path, ObjectId id, int mode) {
+        return new DiffEntry(ChangeType.DELETE, path, id, mode, null, null, 0);
+    }
+
+    /**
+     * Creates the entry for a file whose content or mode changed.
+     *
+     * @param path    The path of the file.
+     * @param oldId   The id of its old blob.
+     * @param oldMode Its old mode.
+     * @param newId   The id of its new blob.
+     * @param newMode Its new mode.
+     * @return The entry.
+     */
+    public static DiffEntry modified(String path, ObjectId oldId, int oldMode, ObjectId newId, int newMode) {
+        return new DiffEntry(ChangeType.MODIFY, path, oldId, oldMode, path, newId, newMode);
+    }
+
+    /**
+     * Creates the entry for a file that was moved, possibly with changes.
+     *
+     * @param deleted The deletion of the old path.
+     * @param added   The addition of the new path.
+     * @param score   The similarity of the two contents, in percent.
+     * @return The entry.
+     */
+    public static DiffEntry renamed(DiffEntry deleted, DiffEntry added, int score) {
+        return new DiffEntry(ChangeType.RENAME, deleted.oldPath, deleted.oldId, deleted.oldMode,
+                added.newPath, added.newId, added.newMode, score);
+    }
+
+    /**
+     * Creates the entry for a file that was added as a copy of another file,
+     * possibly with changes.
+     *
+     * @param source The change of the copied file, whose old side is the source.
+     * @param added  The addition of the new path.
+     * @param score  The similarity of the two contents, in percent.
+     * @return The entry.
+     */
+    public static DiffEntry copied(DiffEntry source, DiffEntry added, int score) {
+        return new DiffEntry(ChangeType.COPY, source.oldPath, source.oldId, source.oldMode,
+                added.newPath, added.newId, added.newMode, score);
+    }
+
+    /**
+     * Returns the kind of change.
+     *
+     * @return The change type.
+     */
+    public ChangeType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the path of the old side.
+     *
+     * @return The old path, or null for an added file.
+     */
+    public String getOldPath() {
+        return oldPath;
+    }
+
+    /**
+     * Returns the path of the new side.
+     *
+     * @return The new path, or null for a deleted file.
+     */
+    public String getNewPath() {
+        return newPath;
+    }
+
+    /**
+     * Returns the path the change is reported under: the new path, or the old
+     * path for a deleted file.
+     *
+     * @return The path.
+     */
+    public String getPath() {
+        return newPath != null ? newPath : oldPath;
+    }
+
+    /**
+     * Returns the blob id of the old side.
+     *
+     * @return The old id, or null for an added file.
+     */
+    public ObjectId getOldId() {
+        return oldId;
+    }
+
+    /**
+     * Returns the blob id of the new side.
+     *
+     * @return The new id, or null for a deleted file.
+     */
+    public ObjectId getNewId() {
+        return newId;
+    }
+
+    /**
+     * Returns the mode of the old side.
+     *
+     * @return The old mode, or 0 for an added file.
+     */
+    public int getOldMode() {
+        return oldMode;
+    }
+
+    /**
+     * Returns the mode of the new side.
+     *
+     * @return The new mode, or 0 for a deleted file.
+     */
+    public int getNewMode() {
+        return newMode;
+    }
+
+    /**
+     * Returns how similar the two sides of a rename or copy are.
+     *
+     * @return The similarity in percent, or 0 for other changes.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        if (type == ChangeType.RENAME || type == ChangeType.COPY) {
+            return type + " " + oldPath + " -> " + newPath + " (" + score + "%)";
+        }
+        return type + " " + getPath();
+    }
+}
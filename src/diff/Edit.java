@@ -0,0 +1,131 @@
+package diff;
+
+import java.util.List;
+
+/**
+ * One region of difference between two sequences of lines.
+ *
+ * The region replaces lines {@code [beginA, endA)} of the old sequence with
+ * lines {@code [beginB, endB)} of the new one. An empty old range is an
+ * insertion and an empty new range is a deletion. Edits produced by a
+ * {@link DiffAlgorithm} are sorted and never touch each other: there is at
+ * least one common line between two consecutive edits.
+ */
+public final class Edit {
+    /** The kind of change an edit describes. */
+    public enum Type {
+        INSERT, DELETE, REPLACE
+    }
+
+    private final int beginA;
+    private final int endA;
+    private final int beginB;
+    private final int endB;
+
+    /**
+     * Creates an edit.
+     *
+     * @param beginA The first replaced line of the old sequence.
+     * @param endA   One past the last replaced line of the old sequence.
+     * @param beginB The first replacing line of the new sequence.
+     * @param endB   One past the last replacing line of the new sequence.
+     */
+    public Edit(int beginA, int endA, int beginB, int endB) {
+        this.beginA = beginA;
+        this.endA = endA;
+        this.beginB = beginB;
+        this.endB = endB;
+    }
+
+    /**
+     * Appends a region to a list of edits, merging it into the last edit if the
+     * two are adjacent.
+     *
+     * @param edits  The edits so far, sorted.
+     * @param beginA The first replaced line of the old sequence.
+     * @param endA   One past the last replaced line of the old sequence.
+     * @param beginB The first replacing line of the new sequence.
+     * @param endB   One past the last replacing line of the new sequence.
+     */
+    static void append(List<Edit> edits, int beginA, int endA, int beginB, int endB) {
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.endA == beginA && last.endB == beginB) {
+                edits.set(edits.size() - 1, new Edit(last.beginA, endA, last.beginB, endB));
+                return;
+            }
+        }
+        edits.add(new Edit(beginA, endA, beginB, endB));
+    }
+
+    /**
+     * Returns the first replaced line of the old sequence.
+     *
+     * @return The first replaced line of the old sequence.
+     */
+    public int getBeginA() {
+        return beginA;
+    }
+
+    /**
+     * Returns one past the last replaced line of the old sequence.
+     *
+     * @return One past the last replaced line of the old sequence.
+     */
+    public int getEndA() {
+        return endA;
+    }
+
+    /**
+     * Returns the first replacing line of the new sequence.
+     *
+     * @return The first replacing line of the new sequence.
+     */
+    public int getBeginB() {
+        return beginB;
+    }
+
+    /**
+     * Returns one past the last replacing line of the new sequence.
+     *
+     * @return One past the last replacing line of the new sequence.
+     */
+    public int getEndB() {
+        return endB;
+    }
+
+    /**
+     * Returns the kind of change.
+     *
+     * @return INSERT if no old lines are replaced, DELETE if no new lines are
+     *         inserted, REPLACE otherwise.
+     */
+    public Type getType() {
+        if (beginA == endA) {
+            return Type.INSERT;
+        }
+        return beginB == endB ? Type.DELETE : Type.REPLACE;
+    }
+
+    @Override
+    public boolean equals(java.lang.Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Edit)) {
+            return false;
+        }
+        Edit other = (Edit) o;
+        return beginA == other.beginA && endA == other.endA && beginB == other.beginB && endB == other.endB;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((beginA * 31 + endA) * 31 + beginB) * 31 + endB;
+    }
+
+    @Override
+    public String toString() {
+        return getType() + "(" + beginA + "-" + endA + "," + beginB + "-" + endB + ")";
+    }
+}
@@ -0,0 +1,149 @@
+package diff;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The histogram diff algorithm, an extension of patience diff.
+ *
+ * For each region the lines of the old side are counted, and the longest run
+ * of common lines anchored on the least frequent line is taken as a fixed
+ * point; the regions before and after it are then diffed the same way. Rare
+ * lines such as function signatures make good anchors, so the result tends to
+ * follow the structure of the file better than a minimal Myers script, and
+ * the work per region is close to linear. Lines occurring more than
+ * {@value #MAX_CHAIN_LENGTH} times are never used as anchors; a region
+ * without any usable anchor falls back to {@link MyersDiff}.
+ *
+ * Regions are processed from an explicit stack, leftmost first, so the edits
+ * come out in order and deep splits cannot overflow the call stack.
+ */
+final class HistogramDiff {
+    private static final int MAX_CHAIN_LENGTH = 64;
+
+    private final int[] a;
+    private final int[] b;
+    private final List<Edit> edits;
+    private final int[] head;   // per line id: first position in the current old region, or -1
+    private final int[] count;  // per line id: occurrences in the current old region
+    private final int[] next;   // per old position: next position with the same line id, or -1
+
+    private HistogramDiff(int[] a, int[] b, int lineCount, List<Edit> edits) {
+        this.a = a;
+        this.b = b;
+        this.edits = edits;
+        this.head = new int[lineCount];
+        this.count = new int[lineCount];
+        this.next = new int[a.length];
+        Arrays.fill(head, -1);
+    }
+
+    /**
+     * Diffs two sequences, appending the edits to a list.
+     *
+     * @param a         The old sequence of line ids.
+     * @param b         The new sequence of line ids.
+     * @param lineCount One more than the largest line id in either sequence.
+     * @param edits     The list receiving the edits, in order.
+     */
+    static void diff(int[] a, int[] b, int lineCount, List<Edit> edits) {
+        new HistogramDiff(a, b, lineCount, edits).diffRegions();
+    }
+
+    private void diffRegions() {
+        ArrayDeque<int[]> regions = new ArrayDeque<>();
+        regions.push(new int[] {0, a.length, 0, b.length});
+        while (!regions.isEmpty()) {
+            int[] region = regions.pop();
+            int aBegin = region[0];
+            int aEnd = region[1];
+            int bBegin = region[2];
+            int bEnd = region[3];
+            while (aBegin < aEnd && bBegin < bEnd && a[aBegin] == b[bBegin]) {
+                aBegin++;
+                bBegin++;
+            }
+            while (aBegin < aEnd && bBegin < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+                aEnd--;
+                bEnd--;
+            }
+            if (aBegin == aEnd || bBegin == bEnd) {
+                if (aBegin != aEnd || bBegin != bEnd) {
+                    Edit.append(edits, aBegin, aEnd, bBegin, bEnd);
+                }
+                continue;
+            }
+
+            int[] anchor = findAnchor(aBegin, aEnd, bBegin, bEnd);
+            if (anchor == null) {
+                MyersDiff.diff(a, aBegin, aEnd, b, bBegin, bEnd, edits);
+                continue;
+            }
+            // Pushed in reverse so the region before the anchor is handled first
+            regions.push(new int[] {anchor[0] + anchor[2], aEnd, anchor[1] + anchor[2], bEnd});
+            regions.push(new int[] {aBegin, anchor[0], bBegin, anchor[1]});
+        }
+    }
+
+    /**
+     * Finds the longest common run anchored on the rarest line of a region.
+     *
+     * @return The anchor as {@code {aStart, bStart, length}}, or null if no line
+     *         of the new side occurs in the old side at most {@value #MAX_CHAIN_LENGTH} times.
+     */
+    private int[] findAnchor(int aBegin, int aEnd, int bBegin, int bEnd) {
+        for (int i = aEnd - 1; i >= aBegin; i--) {
+            int id = a[i];
+            next[i] = head[id];
+            head[id] = i;
+            count[id]++;
+        }
+
+        int bestA = -1;
+        int bestB = -1;
+        int bestLength = 0;
+        int bestCount = MAX_CHAIN_LENGTH;
+        for (int bi = bBegin; bi < bEnd; ) {
+            int id = b[bi];
+            int nextB = bi + 1;
+            if (id < count.length && count[id] > 0 && count[id] <= bestCount) {
+                for (int ai = head[id]; ai >= 0; ) {
+                    int as = ai;
+                    int bs = bi;
+                    int ae = ai + 1;
+                    int be = bi + 1;
+                    int runCount = count[id];
+                    while (as > aBegin && bs > bBegin && a[as - 1] == b[bs - 1]) {
+                        as--;
+                        bs--;
+                        runCount = Math.min(runCount, count[a[as]]);
+                    }
+                    while (ae < aEnd && be < bEnd && a[ae] == b[be]) {
+                        runCount = Math.min(runCount, count[a[ae]]);
+                        ae++;
+                        be++;
+                    }
+                    nextB = Math.max(nextB, be);
+                    if (ae - as > bestLength || runCount < bestCount) {
+                        bestA = as;
+                        bestB = bs;
+                        bestLength = ae - as;
+                        bestCount = runCount;
+                    }
+                    // Occurrences inside the run just found would only find the same run
+                    while (ai >= 0 && ai < ae) {
+                        ai = next[ai];
+                    }
+                }
+            }
+            bi = nextB;
+        }
+
+        for (int i = aBegin; i < aEnd; i++) {
+            head[a[i]] = -1;
+            count[a[i]] = 0;
+        }
+        return bestLength > 0 ? new int[] {bestA, bestB, bestLength} : null;
+    }
+}
@@ -0,0 +1,37 @@
+package diff;
+
+import java.util.HashMap;
+
+/**
+ * Maps lines to small integer ids so the diff algorithms compare ints
+ * instead of strings.
+ *
+ * Equal lines get the same id across every text interned by the same
+ * interner, and ids are dense, starting at 0, so they can index arrays.
+ */
+public final class LineInterner {
+    private final HashMap<String, Integer> ids = new HashMap<>();
+
+    /**
+     * Returns the ids of the lines of a text, assigning new ids to unseen lines.
+     *
+     * @param text The text.
+     * @return The id of every line, in order.
+     */
+    public int[] intern(Text text) {
+        int[] result = new int[text.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.computeIfAbsent(text.getRawLine(i), line -> ids.size());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distinct lines seen so far.
+     *
+     * @return One more than the largest id assigned.
+     */
+    public int size() {
+        return ids.size();
+    }
+}
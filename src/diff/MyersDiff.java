@@ -0,0 +1,151 @@
+package diff;
+
+import java.util.List;
+
+/**
+ * Myers' O(ND) difference algorithm with the linear-space refinement.
+ *
+ * Common prefixes and suffixes are trimmed first. The remaining region is split
+ * at the "middle snake" of an optimal edit script, found by running the greedy
+ * search from both ends at once until the two frontiers meet, and both halves
+ * are diffed recursively. Only two frontier arrays of O(N + M) ints are kept,
+ * and they are reused by every recursive call.
+ *
+ * See E. Myers, "An O(ND) Difference Algorithm and Its Variations", 1986.
+ */
+final class MyersDiff {
+    private final int[] a;
+    private final int[] b;
+    private final List<Edit> edits;
+    private int[] forward = new int[0];
+    private int[] backward = new int[0];
+
+    private MyersDiff(int[] a, int[] b, List<Edit> edits) {
+        this.a = a;
+        this.b = b;
+        this.edits = edits;
+    }
+
+    /**
+     * Diffs a region of two sequences, appending the edits to a list.
+     *
+     * @param a      The old sequence of line ids.
+     * @param aBegin The start of the region in the old sequence.
+     * @param aEnd   The end of the region in the old sequence.
+     * @param b      The new sequence of line ids.
+     * @param bBegin The start of the region in the new sequence.
+     * @param bEnd   The end of the region in the new sequence.
+     * @param edits  The list receiving the edits, in order.
+     */
+    static void diff(int[] a, int aBegin, int aEnd, int[] b, int bBegin, int bEnd, List<Edit> edits) {
+        new MyersDiff(a, b, edits).diffRegion(aBegin, aEnd, bBegin, bEnd);
+    }
+
+    private void diffRegion(int aBegin, int aEnd, int bBegin, int bEnd) {
+        while (aBegin < aEnd && bBegin < bEnd && a[aBegin] == b[bBegin]) {
+            aBegin++;
+            bBegin++;
+        }
+        while (aBegin < aEnd && bBegin < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+            aEnd--;
+            bEnd--;
+        }
+        if (aBegin == aEnd || bBegin == bEnd) {
+            if (aBegin != aEnd || bBegin != bEnd) {
+                Edit.append(edits, aBegin, aEnd, bBegin, bEnd);
+            }
+            return;
+        }
+
+        int[] snake = middleSnake(aBegin, aEnd, bBegin, bEnd);
+        diffRegion(aBegin, snake[0], bBegin, snake[1]);
+        diffRegion(snake[2], aEnd, snake[3], bEnd);
+    }
+
+    /**
+     * Finds the middle snake of an optimal edit script for a region whose first
+     * and last lines differ.
+     *
+     * Frontiers are indexed by diagonal {@code k = x - y}, relative to the start
+     * of the region for the forward search and to its end for the backward one,
+     * and hold the furthest x reached on that diagonal, or -1 if no path of the
+     * current length reaches it without leaving the region.
+     *
+     * @return The start and end of the snake as {@code {x, y, u, v}} in absolute positions.
+     */
+    private int[] middleSnake(int aBegin, int aEnd, int bBegin, int bEnd) {
+        int n = aEnd - aBegin;
+        int m = bEnd - bBegin;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int max = (n + m + 1) / 2;
+        int offset = max + 1;
+        if (forward.length < 2 * max + 3) {
+            forward = new int[2 * max + 3];
+            backward = new int[2 * max + 3];
+        }
+        int[] vf = forward;
+        int[] vb = backward;
+
+        for (int d = 0; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = furthest(vf, offset, k, d, n, m);
+                if (x < 0) {
+                    vf[offset + k] = -1;
+                    continue;
+                }
+                int startX = x;
+                int y = x - k;
+                while (x < n && y < m && a[aBegin + x] == b[bBegin + y]) {
+                    x++;
+                    y++;
+                }
+                vf[offset + k] = x;
+                int c = delta - k;
+                if (odd && c >= -(d - 1) && c <= d - 1 && vb[offset + c] >= 0 && x + vb[offset + c] >= n) {
+                    return new int[] {aBegin + startX, bBegin + startX - k, aBegin + x, bBegin + y};
+                }
+            }
+            for (int c = -d; c <= d; c += 2) {
+                int x = furthest(vb, offset, c, d, n, m);
+                if (x < 0) {
+                    vb[offset + c] = -1;
+                    continue;
+                }
+                int startX = x;
+                int y = x - c;
+                while (x < n && y < m && a[aEnd - 1 - x] == b[bEnd - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                vb[offset + c] = x;
+                int k = delta - c;
+                if (!odd && k >= -d && k <= d && vf[offset + k] >= 0 && x + vf[offset + k] >= n) {
+                    return new int[] {aEnd - x, bEnd - y, aEnd - startX, bEnd - (startX - c)};
+                }
+            }
+        }
+        throw new IllegalStateException("No middle snake found");
+    }
+
+    /**
+     * Computes where a path of length {@code d} starts on diagonal {@code k},
+     * before following its snake: one step right from diagonal {@code k - 1} or
+     * one step down from diagonal {@code k + 1}, whichever reaches further
+     * without leaving the region.
+     *
+     * @return The x coordinate, or -1 if the diagonal cannot be reached.
+     */
+    private static int furthest(int[] v, int offset, int k, int d, int n, int m) {
+        if (d == 0) {
+            return 0;
+        }
+        int right = k > -d ? v[offset + k - 1] : -1;
+        right = right >= 0 && right < n ? right + 1 : -1;
+        int down = k < d ? v[offset + k + 1] : -1;
+        if (down >= 0 && down - (k + 1) >= m) {
+            down = -1;
+        }
+        return Math.max(right, down);
+    }
+}
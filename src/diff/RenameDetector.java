@@ -0,0 +1,287 @@
+package diff;
+
+import objects.ObjectId;
+import objects.ObjectStore;
+import objects.ObjectStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Finds renamed and copied files among the changes between two trees.
+ *
+ * Additions are first paired with deletions of the very same blob, which only
+ * needs a map lookup per file. The additions and deletions left over are then
+ * compared by content using {@link SimilarityIndex} fingerprints, and pairs at
+ * least {@link #DEFAULT_SCORE}% similar become renames, best score first. To
+ * keep this affordable on large commits only the best few sources are kept per
+ * added file, files whose sizes alone rule out the minimum score are never
+ * compared, and the inexact step is skipped entirely when there would be more
+ * than {@code limit * limit} pairs to compare, like git's
+ * {@code diff.renameLimit}.
+ *
+ * With copy detection enabled the old sides of modified files are candidate
+ * sources as well, and a source may be used by several additions: the first
+ * use of a deleted file is a rename, every other match a copy.
+ */
+public final class RenameDetector {
+    /** The default minimum similarity for an inexact rename, in percent. */
+    public static final int DEFAULT_SCORE = 50;
+    /** The default maximum number of sources or destinations for inexact detection. */
+    public static final int DEFAULT_LIMIT = 1000;
+
+    private static final int CANDIDATES_PER_DESTINATION = 4;
+
+    private final ObjectStore store;
+    private int minScore = DEFAULT_SCORE;
+    private int limit = DEFAULT_LIMIT;
+    private boolean findCopies;
+
+    /**
+     * Creates a rename detector.
+     *
+     * @param store The object store holding the blobs to compare.
+     */
+    public RenameDetector(ObjectStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Sets the minimum similarity for an inexact rename or copy.
+     *
+     * @param minScore The minimum score in percent.
+     * @return This detector.
+     */
+    public RenameDetector setMinScore(int minScore) {
+        this.minScore = minScore;
+        return this;
+    }
+
+    /**
+     * Sets the limit above which inexact detection is skipped.
+     *
+     * @param limit The maximum number of sources or destinations; there may be at
+     *              most {@code limit * limit} pairs to compare.
+     * @return This detector.
+     */
+    public RenameDetector setLimit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Enables detection of copies of modified or deleted files.
+     *
+     * @param findCopies true to report copies.
+     * @return This detector.
+     */
+    public RenameDetector setFindCopies(boolean findCopies) {
+        this.findCopies = findCopies;
+        return this;
+    }
+
+    /**
+     * Replaces pairs of additions and deletions by renames, and additions matching
+     * another file by copies if enabled.
+     *
+     * @param changes The changes between two trees.
+     * @return The changes with renames and copies, sorted by path.
+     * @throws IOException If a blob could not be read.
+     */
+    public List<DiffEntry> detect(List<DiffEntry> changes) throws IOException {
+        List<DiffEntry> result = new ArrayList<>();
+        List<DiffEntry> added = new ArrayList<>();
+        List<Source> sources = new ArrayList<>();
+        for (DiffEntry change : changes) {
+            switch (change.getType()) {
+                case ADD -> added.add(change);
+                case DELETE -> sources.add(new Source(change, true));
+                case MODIFY -> {
+                    result.add(change);
+                    if (findCopies) {
+                        sources.add(new Source(change, false));
+                    }
+                }
+                default -> result.add(change);
+            }
+        }
+        if (added.isEmpty() || sources.isEmpty()) {
+            return changes;
+        }
+
+        List<DiffEntry> unmatched = findExact(added, sources, result);
+        if (!unmatched.isEmpty()) {
+            unmatched = findInexact(unmatched, sources, result);
+        }
+        result.addAll(unmatched);
+        for (Source source : sources) {
+            if (source.deleted && !source.renamed) {
+                result.add(source.change);
+            }
+        }
+        result.sort(Comparator.comparing(DiffEntry::getPath));
+        return result;
+    }
+
+    /**
+     * Pairs additions with sources of the same blob.
+     *
+     * @return The additions left unpaired.
+     */
+    private List<DiffEntry> findExact(List<DiffEntry> added, List<Source> sources, List<DiffEntry> result) {
+        HashMap<ObjectId, List<Source>> byId = new HashMap<>();
+        for (Source source : sources) {
+            byId.computeIfAbsent(source.change.getOldId(), id -> new ArrayList<>()).add(source);
+        }
+        List<DiffEntry> unmatched = new ArrayList<>();
+        for (DiffEntry add : added) {
+            List<Source> candidates = byId.get(add.getNewId());
+            DiffEntry paired = candidates != null ? pair(candidates, add, 100) : null;
+            if (paired != null) {
+                result.add(paired);
+            } else {
+                unmatched.add(add);
+            }
+        }
+        return unmatched;
+    }
+
+    /**
+     * Pairs additions with similar sources, best matches first.
+     *
+     * @return The additions left unpaired.
+     */
+    private List<DiffEntry> findInexact(List<DiffEntry> added, List<Source> sources, List<DiffEntry> result)
+            throws IOException {
+        List<Source> open = new ArrayList<>();
+        for (Source source : sources) {
+            if (findCopies || !source.renamed) {
+                open.add(source);
+            }
+        }
+        if (open.isEmpty() || (long) open.size() * added.size() > (long) limit * limit) {
+            return added;
+        }
+
+        for (Source source : open) {
+            source.index = fingerprint(source.change.getOldId());
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        for (int d = 0; d < added.size(); d++) {
+            SimilarityIndex destination = fingerprint(added.get(d).getNewId());
+            if (destination.size() == 0) {
+                continue;
+            }
+            Candidate[] best = new Candidate[CANDIDATES_PER_DESTINATION];
+            for (Source source : open) {
+                long min = Math.min(source.index.size(), destination.size());
+                long max = Math.max(source.index.size(), destination.size());
+                if (min == 0 || min * 100 < max * minScore) {
+                    continue;
+                }
+                int score = source.index.score(destination);
+                if (score >= minScore) {
+                    keepBest(best, new Candidate(source, d, score));
+                }
+            }
+            for (Candidate candidate : best) {
+                if (candidate != null) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+
+        candidates.sort((x, y) -> Integer.compare(y.score, x.score));
+        DiffEntry[] paired = new DiffEntry[added.size()];
+        for (Candidate candidate : candidates) {
+            if (paired[candidate.destination] == null) {
+                paired[candidate.destination] = pair(List.of(candidate.source), added.get(candidate.destination),
+                        candidate.score);
+            }
+        }
+        List<DiffEntry> unmatched = new ArrayList<>();
+        for (int d = 0; d < added.size(); d++) {
+            if (paired[d] != null) {
+                result.add(paired[d]);
+            } else {
+                unmatched.add(added.get(d));
+            }
+        }
+        return unmatched;
+    }
+
+    /**
+     * Pairs an addition with the first usable source: a deleted file not renamed
+     * yet becomes a rename, anything else a copy if copies are enabled.
+     *
+     * @return The rename or copy, or null if no source can be used.
+     */
+    private DiffEntry pair(List<Source> sources, DiffEntry add, int score) {
+        for (Source source : sources) {
+            if (source.deleted && !source.renamed) {
+                source.renamed = true;
+                return DiffEntry.renamed(source.change, add, score);
+            }
+        }
+        if (findCopies && !sources.isEmpty()) {
+            return DiffEntry.copied(sources.get(0).change, add, score);
+        }
+        return null;
+    }
+
+    /**
+     * Inserts a candidate into a small array kept sorted by descending score,
+     * dropping the lowest if it is full.
+     */
+    private static void keepBest(Candidate[] best, Candidate candidate) {
+        for (int i = 0; i < best.length; i++) {
+            if (best[i] == null || candidate.score > best[i].score) {
+                System.arraycopy(best, i, best, i + 1, best.length - i - 1);
+                best[i] = candidate;
+                return;
+            }
+        }
+    }
+
+    private SimilarityIndex fingerprint(ObjectId id) throws IOException {
+        try (ObjectStream in = store.open(id)) {
+            if (in == null) {
+                throw new IOException("Blob not found: " + id);
+            }
+            return SimilarityIndex.of(in.readAllBytes());
+        }
+    }
+
+    /**
+     * A file that additions may have been renamed or copied from.
+     */
+    private static final class Source {
+        final DiffEntry change;
+        final boolean deleted;
+        boolean renamed;
+        SimilarityIndex index;
+
+        Source(DiffEntry change, boolean deleted) {
+            this.change = change;
+            this.deleted = deleted;
+        }
+    }
+
+    /**
+     * A possible pairing of a source with an added file.
+     */
+    private static final class Candidate {
+        final Source source;
+        final int destination;
+        final int score;
+
+        Candidate(Source source, int destination, int score) {
+            this.source = source;
+            this.destination = destination;
+            this.score = score;
+        }
+    }
+}
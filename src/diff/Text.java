@@ -0,0 +1,98 @@
+package diff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The content of a file, split into lines for diffing.
+ *
+ * Each line keeps its terminating {@code \n}, so a last line without one
+ * never compares equal to the same line with one, and the formatter can
+ * report the missing newline. Like git, content with a NUL byte in its first
+ * 8000 bytes is treated as binary and not split.
+ */
+public final class Text {
+    /** A file with no lines, used for the missing side of an added or deleted file. */
+    public static final Text EMPTY = new Text(new String[0], false);
+
+    private static final int BINARY_CHECK_LENGTH = 8000;
+
+    private final String[] lines;
+    private final boolean binary;
+
+    private Text(String[] lines, boolean binary) {
+        this.lines = lines;
+        this.binary = binary;
+    }
+
+    /**
+     * Splits file content into lines.
+     *
+     * @param data The raw content of the file.
+     * @return The text.
+     */
+    public static Text of(byte[] data) {
+        for (int i = 0; i < Math.min(data.length, BINARY_CHECK_LENGTH); i++) {
+            if (data[i] == 0) {
+                return new Text(new String[0], true);
+            }
+        }
+        String content = new String(data, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf('\n', start);
+            end = end < 0 ? content.length() : end + 1;
+            lines.add(content.substring(start, end));
+            start = end;
+        }
+        return new Text(lines.toArray(new String[0]), false);
+    }
+
+    /**
+     * Checks whether the content is binary.
+     *
+     * @return true if the content was not split into lines.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return The line count.
+     */
+    public int size() {
+        return lines.length;
+    }
+
+    /**
+     * Returns a line without its terminating newline.
+     *
+     * @param i The index of the line.
+     * @return The line's content.
+     */
+    public String getLine(int i) {
+        String line = lines[i];
+        return hasNewline(i) ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * Checks whether a line ends with a newline. Only the last line can lack one.
+     *
+     * @param i The index of the line.
+     * @return true if the line is terminated.
+     */
+    public boolean hasNewline(int i) {
+        return lines[i].endsWith("\n");
+    }
+
+    /**
+     * Returns a line including its terminating newline, for comparisons.
+     */
+    String getRawLine(int i) {
+        return lines[i];
+    }
+}
@@ -0,0 +1,179 @@
+package diff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Merges two versions of a file that were both changed from a common base.
+ *
+ * The base is diffed against each side with a {@link DiffAlgorithm}. Edits of
+ * the two sides that overlap or touch in the base, directly or through a chain
+ * of other edits, form one group. A group changed by one side only takes that
+ * side's lines, and a group both sides changed the same way takes them once.
+ * Any other group is a conflict and is written with both versions between
+ * git's conflict markers:
+ * <pre>
+ * &lt;&lt;&lt;&lt;&lt;&lt;&lt; ours
+ * ...
+ * =======
+ * ...
+ * &gt;&gt;&gt;&gt;&gt;&gt;&gt; theirs
+ * </pre>
+ * Lines outside all groups are the same in all three versions and are copied
+ * from the base.
+ */
+public final class ThreeWayMerge {
+    private final DiffAlgorithm algorithm;
+    private final String oursLabel;
+    private final String theirsLabel;
+
+    /**
+     * Creates a merger.
+     *
+     * @param algorithm   The algorithm used to diff the base against each side.
+     * @param oursLabel   The name written after the opening conflict marker.
+     * @param theirsLabel The name written after the closing conflict marker.
+     */
+    public ThreeWayMerge(DiffAlgorithm algorithm, String oursLabel, String theirsLabel) {
+        this.algorithm = algorithm;
+        this.oursLabel = oursLabel;
+        this.theirsLabel = theirsLabel;
+    }
+
+    /**
+     * Merges two versions of a file. Binary content is never merged: the result
+     * is a conflict holding our version.
+     *
+     * @param base   The common base, {@link Text#EMPTY} if both sides added the file.
+     * @param ours   Our version.
+     * @param theirs Their version.
+     * @return The merged content and the number of conflicts in it.
+     */
+    public Result merge(Text base, Text ours, Text theirs) {
+        if (base.isBinary() || ours.isBinary() || theirs.isBinary()) {
+            return new Result(null, 1);
+        }
+        List<Edit> oursEdits = algorithm.diff(base, ours);
+        List<Edit> theirsEdits = algorithm.diff(base, theirs);
+
+        StringBuilder out = new StringBuilder();
+        int conflicts = 0;
+        int basePos = 0;
+        int oursShift = 0;    // lines added minus lines removed by our edits so far
+        int theirsShift = 0;
+        int i = 0;
+        int j = 0;
+        while (i < oursEdits.size() || j < theirsEdits.size()) {
+            boolean oursFirst = j == theirsEdits.size()
+                    || (i < oursEdits.size() && oursEdits.get(i).getBeginA() <= theirsEdits.get(j).getBeginA());
+            int groupBegin = oursFirst ? oursEdits.get(i).getBeginA() : theirsEdits.get(j).getBeginA();
+            int groupEnd = groupBegin;
+            int oursStart = i;
+            int theirsStart = j;
+            int oursBegin = groupBegin + oursShift;
+            int theirsBegin = groupBegin + theirsShift;
+            while (true) {
+                if (i < oursEdits.size() && oursEdits.get(i).getBeginA() <= groupEnd) {
+                    Edit edit = oursEdits.get(i++);
+                    groupEnd = Math.max(groupEnd, edit.getEndA());
+                    oursShift += (edit.getEndB() - edit.getBeginB()) - (edit.getEndA() - edit.getBeginA());
+                } else if (j < theirsEdits.size() && theirsEdits.get(j).getBeginA() <= groupEnd) {
+                    Edit edit = theirsEdits.get(j++);
+                    groupEnd = Math.max(groupEnd, edit.getEndA());
+                    theirsShift += (edit.getEndB() - edit.getBeginB()) - (edit.getEndA() - edit.getBeginA());
+                } else {
+                    break;
+                }
+            }
+
+            append(out, base, basePos, groupBegin);
+            int oursEnd = groupEnd + oursShift;
+            int theirsEnd = groupEnd + theirsShift;
+            if (i == oursStart) {
+                append(out, theirs, theirsBegin, theirsEnd);
+            } else if (j == theirsStart || sameLines(ours, oursBegin, oursEnd, theirs, theirsBegin, theirsEnd)) {
+                append(out, ours, oursBegin, oursEnd);
+            } else {
+                conflicts++;
+                out.append("<<<<<<< ").append(oursLabel).append('\n');
+                append(out, ours, oursBegin, oursEnd);
+                terminate(out);
+                out.append("=======\n");
+                append(out, theirs, theirsBegin, theirsEnd);
+                terminate(out);
+                out.append(">>>>>>> ").append(theirsLabel).append('\n');
+            }
+            basePos = groupEnd;
+        }
+        append(out, base, basePos, base.size());
+        return new Result(out.toString().getBytes(StandardCharsets.UTF_8), conflicts);
+    }
+
+    private static void append(StringBuilder out, Text text, int from, int to) {
+        for (int line = from; line < to; line++) {
+            out.append(text.getRawLine(line));
+        }
+    }
+
+    /**
+     * Ends the output with a newline, so a side whose last line had none does
+     * not run into the next conflict marker.
+     */
+    private static void terminate(StringBuilder out) {
+        if (!out.isEmpty() && out.charAt(out.length() - 1) != '\n') {
+            out.append('\n');
+        }
+    }
+
+    private static boolean sameLines(Text a, int aBegin, int aEnd, Text b, int bBegin, int bEnd) {
+        if (aEnd - aBegin != bEnd - bBegin) {
+            return false;
+        }
+        for (int k = 0; k < aEnd - aBegin; k++) {
+            if (!a.getRawLine(aBegin + k).equals(b.getRawLine(bBegin + k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The outcome of merging one file.
+     */
+    public static final class Result {
+        private final byte[] content;
+        private final int conflicts;
+
+        private Result(byte[] content, int conflicts) {
+            this.content = content;
+            this.conflicts = conflicts;
+        }
+
+        /**
+         * Returns the merged content, with conflict markers around each conflict.
+         *
+         * @return The content, or null if binary content could not be merged.
+         */
+        public byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * Returns the number of conflicting groups of lines.
+         *
+         * @return The conflict count, 0 for a clean merge.
+         */
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        /**
+         * Checks whether the merge needs to be resolved by hand.
+         *
+         * @return true if there is at least one conflict.
+         */
+        public boolean hasConflicts() {
+            return conflicts > 0;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package diff;
+
+import objects.ObjectId;
+import objects.ObjectStore;
+import objects.Tree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Compares two trees file by file.
+ *
+ * Both trees are walked together in git order, one directory at a time. A
+ * subtree with the same id on both sides is identical and is skipped without
+ * being read, so the cost of a comparison grows with the number of changed
+ * files and the depth of their directories rather than with the size of the
+ * trees. Changes are reported as they are found, in path order, as
+ * {@link DiffEntry} additions, modifications and deletions; a file replaced by
+ * a directory of the same name, or the reverse, is a deletion plus additions.
+ */
+public final class TreeDiff {
+    private final ObjectStore store;
+    private BiConsumer<String, ObjectId> newTreeVisitor = (dir, id) -> { };
+    private String pathFilter;
+
+    /**
+     * Creates a tree walker.
+     *
+     * @param store The object store holding the trees.
+     */
+    public TreeDiff(ObjectStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Registers a callback for every tree of the new side that the walk
+     * descends into, i.e. every new directory that differs from the old side.
+     *
+     * @param visitor Receives the directory path followed by {@code /} (empty
+     *                for the root) and the id of its tree.
+     * @return This walker.
+     */
+    public TreeDiff onNewTree(BiConsumer<String, ObjectId> visitor) {
+        this.newTreeVisitor = visitor;
+        return this;
+    }
+
+    /**
+     * Limits the walk to a single path. Only the directories containing it are
+     * read, so finding out whether a commit touched one file costs one tree per
+     * level of its path.
+     *
+     * @param path The {@code /}-separated path of a file, or null to compare everything.
+     * @return This walker.
+     */
+    public TreeDiff setPathFilter(String path) {
+        this.pathFilter = path;
+        return this;
+    }
+
+    /**
+     * Compares two trees and collects the changes.
+     *
+     * @param oldTreeId The id of the old tree, or null to treat every new file as added.
+     * @param newTreeId The id of the new tree, or null to treat every old file as deleted.
+     * @return The changes, in path order.
+     * @throws IOException If a tree could not be read.
+     */
+    public List<DiffEntry> diff(ObjectId oldTreeId, ObjectId newTreeId) throws IOException {
+        List<DiffEntry> changes = new ArrayList<>();
+        diff(oldTreeId, newTreeId, changes::add);
+        return changes;
+    }
+
+    /**
+     * Compares two trees, passing each change to a consumer as soon as it is found.
+     *
+     * @param oldTreeId The id of the old tree, or null to treat every new file as added.
+     * @param newTreeId The id of the new tree, or null to treat every old file as deleted.
+     * @param changes   Receives the changes, in path order.
+     * @throws IOException If a tree could not be read.
+     */
+    public void diff(ObjectId oldTreeId, ObjectId newTreeId, Consumer<DiffEntry> changes) throws IOException {
+        walk(oldTreeId, newTreeId, "", changes);
+    }
+
+    private void walk(ObjectId oldTreeId, ObjectId newTreeId, String prefix, Consumer<DiffEntry> changes)
+            throws IOException {
+        if (oldTreeId != null && oldTreeId.equals(newTreeId)) {
+            return;
+        }
+        if (newTreeId != null) {
+            newTreeVisitor.accept(prefix, newTreeId);
+        }
+
+        List<Tree.Entry> oldEntries = readEntries(oldTreeId);
+        List<Tree.Entry> newEntries = readEntries(newTreeId);
+        int i = 0;
+        int j = 0;
+        while (i < oldEntries.size() || j < newEntries.size()) {
+            Tree.Entry oldEntry = i < oldEntries.size() ? oldEntries.get(i) : null;
+            Tree.Entry newEntry = j < newEntries.size() ? newEntries.get(j) : null;
+            int cmp = oldEntry == null ? 1 : newEntry == null ? -1 : Tree.compareNames(oldEntry, newEntry);
+            if (cmp < 0) {
+                report(oldEntry, null, prefix, changes);
+                i++;
+            } else if (cmp > 0) {
+                report(null, newEntry, prefix, changes);
+                j++;
+            } else {
+                report(oldEntry, newEntry, prefix, changes);
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Reports the change between two entries of the same name and kind, or the
+     * deletion or addition of a single entry, descending into subtrees.
+     */
+    private void report(Tree.Entry oldEntry, Tree.Entry newEntry, String prefix, Consumer<DiffEntry> changes)
+            throws IOException {
+        Tree.Entry entry = newEntry != null ? newEntry : oldEntry;
+        String path = prefix + entry.getName();
+        if (pathFilter != null && !(entry.isTree() ? pathFilter.startsWith(path + "/") : pathFilter.equals(path))) {
+            return;
+        }
+        if (entry.isTree()) {
+            walk(oldEntry != null ? oldEntry.getId() : null, newEntry != null ? newEntry.getId() : null,
+                    path + "/", changes);
+        } else if (oldEntry == null) {
+            changes.accept(DiffEntry.added(path, newEntry.getId(), newEntry.getMode()));
+        } else if (newEntry == null) {
+            changes.accept(DiffEntry.deleted(path, oldEntry.getId(), oldEntry.getMode()));
+        } else if (!oldEntry.getId().equals(newEntry.getId()) || oldEntry.getMode() != newEntry.getMode()) {
+            changes.accept(DiffEntry.modified(path, oldEntry.getId(), oldEntry.getMode(),
+                    newEntry.getId(), newEntry.getMode()));
+        }
+    }
+
+    private List<Tree.Entry> readEntries(ObjectId treeId) throws IOException {
+        if (treeId == null) {
+            return List.of();
+        }
+        String content = store.read(treeId);
+        if (content == null) {
+            throw new IOException("Tree not found: " + treeId);
+        }
+        return Tree.parse(treeId, content).getEntries();
+    }
+}
@@ -0,0 +1,160 @@
+package diff;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Writes differences between files in git's unified diff format.
+ *
+ * Each file starts with a {@code diff --git} header followed by hunks of
+ * changed lines surrounded by up to {@code context} unchanged lines. Edits
+ * separated by no more than twice the context are joined into one hunk.
+ */
+public final class UnifiedFormatter {
+    private static final String NO_NEWLINE = "\\ No newline at end of file";
+
+    private final PrintWriter out;
+    private final DiffAlgorithm algorithm;
+    private final int context;
+
+    /**
+     * Creates a formatter.
+     *
+     * @param out       The writer receiving the diff.
+     * @param algorithm The algorithm used to compare file contents.
+     * @param context   The number of unchanged lines shown around each change.
+     */
+    public UnifiedFormatter(PrintWriter out, DiffAlgorithm algorithm, int context) {
+        this.out = out;
+        this.algorithm = algorithm;
+        this.context = context;
+    }
+
+    /**
+     * Writes the difference between two versions of a file. Nothing is written
+     * if their contents are equal.
+     *
+     * @param oldPath The path of the old version, or null if the file was added.
+     * @param newPath The path of the new version, or null if the file was deleted.
+     * @param a       The old content, {@link Text#EMPTY} if the file was added.
+     * @param b       The new content, {@link Text#EMPTY} if the file was deleted.
+     */
+    public void format(String oldPath, String newPath, Text a, Text b) {
+        format(oldPath, newPath, List.of(), a, b);
+    }
+
+    /**
+     * Writes a change between two trees. Renames and copies get git's
+     * {@code similarity index}, {@code rename from/to} or {@code copy from/to}
+     * header lines, and are shown even if the content did not change.
+     *
+     * @param change The change.
+     * @param a      The old content, {@link Text#EMPTY} if the file was added.
+     * @param b      The new content, {@link Text#EMPTY} if the file was deleted.
+     */
+    public void format(DiffEntry change, Text a, Text b) {
+        String kind = switch (change.getType()) {
+            case RENAME -> "rename";
+            case COPY -> "copy";
+            default -> null;
+        };
+        if (kind == null) {
+            format(change.getOldPath(), change.getNewPath(), a, b);
+            return;
+        }
+        format(change.getOldPath(), change.getNewPath(), List.of(
+                "similarity index " + change.getScore() + "%",
+                kind + " from " + change.getOldPath(),
+                kind + " to " + change.getNewPath()), a, b);
+    }
+
+    private void format(String oldPath, String newPath, List<String> extendedHeader, Text a, Text b) {
+        String aName = "a/" + (oldPath != null ? oldPath : newPath);
+        String bName = "b/" + (newPath != null ? newPath : oldPath);
+        if (a.isBinary() || b.isBinary()) {
+            writeHeader(aName, bName, extendedHeader);
+            out.println("Binary files " + (oldPath != null ? aName : "/dev/null")
+                    + " and " + (newPath != null ? bName : "/dev/null") + " differ");
+            return;
+        }
+
+        List<Edit> edits = algorithm.diff(a, b);
+        if (edits.isEmpty() && oldPath != null && newPath != null) {
+            if (!extendedHeader.isEmpty()) {
+                writeHeader(aName, bName, extendedHeader);
+            }
+            return;
+        }
+        writeHeader(aName, bName, extendedHeader);
+        out.println("--- " + (oldPath != null ? aName : "/dev/null"));
+        out.println("+++ " + (newPath != null ? bName : "/dev/null"));
+
+        int first = 0;
+        while (first < edits.size()) {
+            int last = first;
+            while (last + 1 < edits.size()
+                    && edits.get(last + 1).getBeginA() - edits.get(last).getEndA() <= 2 * context) {
+                last++;
+            }
+            writeHunk(a, b, edits.subList(first, last + 1));
+            first = last + 1;
+        }
+    }
+
+    private void writeHeader(String aName, String bName, List<String> extendedHeader) {
+        out.println("diff --git " + aName + " " + bName);
+        for (String line : extendedHeader) {
+            out.println(line);
+        }
+    }
+
+    /**
+     * Writes one hunk covering a group of nearby edits.
+     */
+    private void writeHunk(Text a, Text b, List<Edit> edits) {
+        Edit first = edits.get(0);
+        Edit last = edits.get(edits.size() - 1);
+        int before = Math.min(context, Math.min(first.getBeginA(), first.getBeginB()));
+        int after = Math.min(context, Math.min(a.size() - last.getEndA(), b.size() - last.getEndB()));
+        int aStart = first.getBeginA() - before;
+        int bStart = first.getBeginB() - before;
+        int aEnd = last.getEndA() + after;
+        int bEnd = last.getEndB() + after;
+        out.println("@@ -" + range(aStart, aEnd - aStart) + " +" + range(bStart, bEnd - bStart) + " @@");
+
+        int ai = aStart;
+        for (Edit edit : edits) {
+            for (; ai < edit.getBeginA(); ai++) {
+                writeLine(' ', a, ai);
+            }
+            for (; ai < edit.getEndA(); ai++) {
+                writeLine('-', a, ai);
+            }
+            for (int bi = edit.getBeginB(); bi < edit.getEndB(); bi++) {
+                writeLine('+', b, bi);
+            }
+        }
+        for (; ai < aEnd; ai++) {
+            writeLine(' ', a, ai);
+        }
+    }
+
+    private void writeLine(char prefix, Text text, int line) {
+        out.print(prefix);
+        out.println(text.getLine(line));
+        if (!text.hasNewline(line)) {
+            out.println(NO_NEWLINE);
+        }
+    }
+
+    /**
+     * Formats a hunk range the way git does: 1-based, with the count omitted
+     * when it is 1 and the start pointing before the hunk when it is empty.
+     */
+    private static String range(int start, int count) {
+        if (count == 0) {
+            return start + ",0";
+        }
+        return count == 1 ? String.valueOf(start + 1) : (start + 1) + "," + count;
+    }
+}
@@ -0,0 +1,437 @@
+package graph;
+
+import objects.ObjectId;
+import utils.HashAlgorithm;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Memory-mapped commit-graph file ({@code .git/objects/info/commit-graph}).
+ *
+ * The file holds the structure of the history in fixed-width records, so
+ * walking ancestry never has to read or parse commit objects:
+ * - a 20-byte header: the signature {@code CGPH}, the version, the id length,
+ *   the commit count and the number of extra parent edges,
+ * - a 256-entry fan-out table over the first id byte,
+ * - the sorted commit ids,
+ * - per commit: its root tree id, two parent positions, its generation number
+ *   and its commit time in seconds since the epoch,
+ * - the extra parent edges of commits with more than two parents,
+ * - a checksum of everything before it, using the repository's hash algorithm.
+ *
+ * Parents are stored as positions in the sorted id list, as in git. A commit
+ * without a second parent stores {@link #PARENT_NONE}; a commit with more than
+ * two parents stores the first one directly and, in the second slot, the index
+ * of its remaining parents in the edge list with the high bit set. The last
+ * edge of each such list has its high bit set as well.
+ *
+ * The generation number of a root commit is 1 and that of any other commit is
+ * one more than the highest generation of its parents. A commit can therefore
+ * only be an ancestor of commits with a higher generation, which lets
+ * reachability queries stop walking early.
+ */
+public class CommitGraph {
+    private static final int SIGNATURE = 0x43475048; // "CGPH"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int FANOUT_OFFSET = HEADER_SIZE;
+    private static final int IDS_OFFSET = FANOUT_OFFSET + 256 * 4;
+    private static final int PARENT_NONE = 0x70000000;
+    private static final int EDGE_FLAG = 0x80000000;
+
+    private final int idLength;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int dataOffset;
+    private final int recordSize;
+    private final int edgesOffset;
+
+    private CommitGraph(int idLength, MappedByteBuffer buffer) {
+        this.idLength = idLength;
+        this.buffer = buffer;
+        this.count = buffer.getInt(12);
+        this.dataOffset = IDS_OFFSET + count * idLength;
+        this.recordSize = idLength + 20;
+        this.edgesOffset = dataOffset + count * recordSize;
+    }
+
+    /**
+     * Maps a commit-graph file.
+     *
+     * @param file      The commit-graph file.
+     * @param algorithm The hash algorithm of the repository.
+     * @return The graph, or null if the file does not exist.
+     * @throws IOException If the file could not be mapped or is not a valid commit-graph.
+     */
+    public static CommitGraph open(Path file, HashAlgorithm algorithm) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < IDS_OFFSET || buffer.getInt(0) != SIGNATURE || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported commit-graph: " + file);
+        }
+        if (buffer.getInt(8) != algorithm.getRawLength()) {
+            throw new IOException("Commit-graph uses " + buffer.getInt(8) + "-byte ids, repository uses "
+                    + algorithm.getRawLength());
+        }
+        CommitGraph graph = new CommitGraph(algorithm.getRawLength(), buffer);
+        long expected = (long) graph.edgesOffset + buffer.getInt(16) * 4L + algorithm.getRawLength();
+        if (buffer.capacity() != expected) {
+            throw new IOException("Truncated commit-graph: " + file);
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the number of commits in the graph.
+     *
+     * @return The commit count.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Looks up the position of a commit.
+     *
+     * @param id The commit id.
+     * @return The position of the commit, or -1 if it is not in the graph.
+     */
+    public int find(ObjectId id) {
+        if (id.rawLength() != idLength) {
+            return -1;
+        }
+        int first = id.firstByte();
+        int low = first == 0 ? 0 : buffer.getInt(FANOUT_OFFSET + (first - 1) * 4);
+        int high = buffer.getInt(FANOUT_OFFSET + first * 4) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the id of the commit at a position.
+     *
+     * @param position The position, between 0 and {@link #size()} - 1.
+     * @return The commit id.
+     */
+    public ObjectId idAt(int position) {
+        return readId(IDS_OFFSET + position * idLength);
+    }
+
+    /**
+     * Returns the root tree id of the commit at a position.
+     *
+     * @param position The position of the commit.
+     * @return The tree id.
+     */
+    public ObjectId treeAt(int position) {
+        return readId(dataOffset + position * recordSize);
+    }
+
+    /**
+     * Returns the positions of the parents of the commit at a position.
+     *
+     * @param position The position of the commit.
+     * @return The parent positions, in parent order; empty for a root commit.
+     */
+    public int[] parentsAt(int position) {
+        int base = dataOffset + position * recordSize + idLength;
+        int first = buffer.getInt(base);
+        if (first == PARENT_NONE) {
+            return new int[0];
+        }
+        int second = buffer.getInt(base + 4);
+        if (second == PARENT_NONE) {
+            return new int[]{first};
+        }
+        if ((second & EDGE_FLAG) == 0) {
+            return new int[]{first, second};
+        }
+
+        int edge = second & ~EDGE_FLAG;
+        int length = 1;
+        while ((buffer.getInt(edgesOffset + (edge + length - 1) * 4) & EDGE_FLAG) == 0) {
+            length++;
+        }
+        int[] parents = new int[length + 1];
+        parents[0] = first;
+        for (int i = 0; i < length; i++) {
+            parents[i + 1] = buffer.getInt(edgesOffset + (edge + i) * 4) & ~EDGE_FLAG;
+        }
+        return parents;
+    }
+
+    /**
+     * Returns the generation number of the commit at a position.
+     *
+     * @param position The position of the commit.
+     * @return The generation number, 1 for root commits.
+     */
+    public int generationAt(int position) {
+        return buffer.getInt(dataOffset + position * recordSize + idLength + 8);
+    }
+
+    /**
+     * Returns the commit time of the commit at a position.
+     *
+     * @param position The position of the commit.
+     * @return The commit time in seconds since the epoch.
+     */
+    public long commitTimeAt(int position) {
+        return buffer.getLong(dataOffset + position * recordSize + idLength + 12);
+    }
+
+    /**
+     * Checks whether one commit is reachable from another by following parents.
+     * The walk skips every commit whose generation is not higher than the
+     * ancestor's, since such commits cannot lead to it.
+     *
+     * @param ancestor   The position of the possible ancestor.
+     * @param descendant The position of the commit to walk from.
+     * @return true if {@code ancestor} is {@code descendant} or one of its ancestors.
+     */
+    public boolean isAncestor(int ancestor, int descendant) {
+        int minGeneration = generationAt(ancestor);
+        BitSet seen = new BitSet(count);
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        pending.push(descendant);
+        seen.set(descendant);
+        while (!pending.isEmpty()) {
+            int position = pending.pop();
+            if (position == ancestor) {
+                return true;
+            }
+            if (generationAt(position) <= minGeneration) {
+                continue;
+            }
+            for (int parent : parentsAt(position)) {
+                if (!seen.get(parent)) {
+                    seen.set(parent);
+                    pending.push(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the id at a position with the given id, word by word.
+     */
+    private int compare(int position, ObjectId id) {
+        int base = IDS_OFFSET + position * idLength;
+        for (int i = 0; i < idLength / 4; i++) {
+            int cmp = Integer.compareUnsigned(buffer.getInt(base + i * 4), id.word(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private ObjectId readId(int offset) {
+        byte[] raw = new byte[idLength];
+        buffer.get(offset, raw);
+        return ObjectId.fromRaw(raw);
+    }
+
+    /**
+     * Writes a commit-graph file for a set of commits, computing their
+     * generation numbers. Parents that are not among the commits are left out.
+     *
+     * @param file      The commit-graph file to write.
+     * @param commits   The commits, in any order.
+     * @param algorithm The hash algorithm of the repository.
+     * @throws IOException If the file could not be written.
+     */
+    public static void write(Path file, List<Entry> commits, HashAlgorithm algorithm) throws IOException {
+        List<Entry> sorted = new ArrayList<>(commits);
+        sorted.sort(Comparator.comparing(Entry::getId));
+        HashMap<ObjectId, Integer> positions = new HashMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            positions.put(sorted.get(i).id, i);
+        }
+
+        int[][] parents = new int[sorted.size()][];
+        for (int i = 0; i < sorted.size(); i++) {
+            List<ObjectId> parentIds = sorted.get(i).parentIds;
+            int[] known = new int[parentIds.size()];
+            int n = 0;
+            for (ObjectId parentId : parentIds) {
+                Integer position = positions.get(parentId);
+                if (position != null) {
+                    known[n++] = position;
+                }
+            }
+            parents[i] = n == known.length ? known : Arrays.copyOf(known, n);
+        }
+        int[] generations = computeGenerations(parents);
+
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), "tmp_graph_", null);
+        try {
+            MessageDigest digest = algorithm.newDigest();
+            DigestOutputStream digestOut = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 65536), digest);
+            try (DataOutputStream out = new DataOutputStream(digestOut)) {
+                ArrayList<Integer> edges = new ArrayList<>();
+                out.writeInt(SIGNATURE);
+                out.writeInt(VERSION);
+                out.writeInt(algorithm.getRawLength());
+                out.writeInt(sorted.size());
+                int extraEdges = 0;
+                for (int[] p : parents) {
+                    if (p.length > 2) {
+                        extraEdges += p.length - 1;
+                    }
+                }
+                out.writeInt(extraEdges);
+
+                int[] fanout = new int[256];
+                for (Entry entry : sorted) {
+                    fanout[entry.id.firstByte()]++;
+                }
+                int total = 0;
+                for (int i = 0; i < 256; i++) {
+                    total += fanout[i];
+                    out.writeInt(total);
+                }
+
+                byte[] raw = new byte[algorithm.getRawLength()];
+                for (Entry entry : sorted) {
+                    entry.id.copyRawTo(raw, 0);
+                    out.write(raw);
+                }
+                for (int i = 0; i < sorted.size(); i++) {
+                    Entry entry = sorted.get(i);
+                    entry.treeId.copyRawTo(raw, 0);
+                    out.write(raw);
+                    int[] p = parents[i];
+                    out.writeInt(p.length > 0 ? p[0] : PARENT_NONE);
+                    if (p.length <= 1) {
+                        out.writeInt(PARENT_NONE);
+                    } else if (p.length == 2) {
+                        out.writeInt(p[1]);
+                    } else {
+                        out.writeInt(EDGE_FLAG | edges.size());
+                        for (int j = 1; j < p.length; j++) {
+                            edges.add(j == p.length - 1 ? p[j] | EDGE_FLAG : p[j]);
+                        }
+                    }
+                    out.writeInt(generations[i]);
+                    out.writeLong(entry.commitTime);
+                }
+                for (int edge : edges) {
+                    out.writeInt(edge);
+                }
+
+                digestOut.on(false);
+                out.write(digest.digest());
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Computes generation numbers with an iterative depth-first walk, so long
+     * linear histories do not overflow the stack.
+     *
+     * @param parents The parent positions of each commit.
+     * @return The generation number of each commit.
+     */
+    private static int[] computeGenerations(int[][] parents) {
+        int[] generations = new int[parents.length];
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        for (int start = 0; start < parents.length; start++) {
+            if (generations[start] != 0) {
+                continue;
+            }
+            pending.push(start);
+            while (!pending.isEmpty()) {
+                int position = pending.peek();
+                int max = 0;
+                boolean ready = true;
+                for (int parent : parents[position]) {
+                    if (generations[parent] == 0) {
+                        ready = false;
+                        pending.push(parent);
+                    } else {
+                        max = Math.max(max, generations[parent]);
+                    }
+                }
+                if (ready) {
+                    pending.pop();
+                    generations[position] = max + 1;
+                }
+            }
+        }
+        return generations;
+    }
+
+    /**
+     * A commit to be written to a commit-graph.
+     */
+    public static class Entry {
+        private final ObjectId id;
+        private final ObjectId treeId;
+        private final List<ObjectId> parentIds;
+        private final long commitTime;
+
+        /**
+         * Creates a commit-graph entry.
+         *
+         * @param id         The commit id.
+         * @param treeId     The id of the commit's root tree.
+         * @param parentIds  The ids of the commit's parents, in order.
+         * @param commitTime The commit time in seconds since the epoch.
+         */
+        public Entry(ObjectId id, ObjectId treeId, List<ObjectId> parentIds, long commitTime) {
+            this.id = id;
+            this.treeId = treeId;
+            this.parentIds = parentIds;
+            this.commitTime = commitTime;
+        }
+
+        /**
+         * Returns the commit id.
+         *
+         * @return The id.
+         */
+        public ObjectId getId() {
+            return id;
+        }
+    }
+}
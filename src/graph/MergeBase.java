@@ -0,0 +1,204 @@
+package graph;
+
+import objects.Commit;
+import objects.ObjectId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Finds the best common ancestors of two commits, the merge bases.
+ *
+ * Like git's {@code paint_down_to_common}, the walk starts from both commits
+ * at once and marks every commit with the side or sides it was reached from.
+ * Commits are taken from a priority queue newest first: by generation number
+ * when the commit is in the commit-graph, then by commit time. A commit reached
+ * from both sides is a common ancestor; it and everything below it are marked
+ * stale, and the walk ends as soon as only stale commits are left in the queue.
+ * With generation numbers a commit is never taken before all of its
+ * descendants in the walk, so the walk stops right below the merge bases
+ * instead of going through the whole history.
+ *
+ * Commits that are not in the commit-graph yet, typically the ones made since
+ * the last repack, are read from the object store and ordered after the
+ * commit-graph's commits by time alone. They can only be descendants of the
+ * commits in the graph, so the order stays correct.
+ */
+public class MergeBase {
+    private static final int PARENT1 = 1;
+    private static final int PARENT2 = 2;
+    private static final int STALE = 4;
+    private static final int RESULT = 8;
+    private static final int GENERATION_INFINITY = Integer.MAX_VALUE;
+
+    private static final Comparator<Node> NEWEST_FIRST = Comparator
+            .comparingInt((Node n) -> n.generation).reversed()
+            .thenComparing(Comparator.comparingLong((Node n) -> n.time).reversed());
+
+    private final CommitGraph graph;
+    private final Function<ObjectId, Commit> commits;
+    private final HashMap<ObjectId, Node> nodes = new HashMap<>();
+
+    /**
+     * Creates a merge-base finder.
+     *
+     * @param graph   The commit-graph, or null to read every commit from the object store.
+     * @param commits Reads a commit by id, returning null if it is missing.
+     */
+    public MergeBase(CommitGraph graph, Function<ObjectId, Commit> commits) {
+        this.graph = graph;
+        this.commits = commits;
+    }
+
+    /**
+     * Finds the merge bases of two commits: their common ancestors that are not
+     * ancestors of another common ancestor.
+     *
+     * @param one The id of the first commit.
+     * @param two The id of the second commit.
+     * @return The merge bases, best first; empty if the commits have no common history.
+     */
+    public List<ObjectId> find(ObjectId one, ObjectId two) {
+        if (one.equals(two)) {
+            return List.of(one);
+        }
+        Node first = node(one);
+        Node second = node(two);
+        if (first == null || second == null) {
+            return List.of();
+        }
+
+        PriorityQueue<Node> queue = new PriorityQueue<>(NEWEST_FIRST);
+        first.flags |= PARENT1;
+        second.flags |= PARENT2;
+        queue.add(first);
+        queue.add(second);
+        List<Node> results = new ArrayList<>();
+        while (hasNonStale(queue)) {
+            Node commit = queue.poll();
+            int flags = commit.flags & (PARENT1 | PARENT2 | STALE);
+            if ((flags & (PARENT1 | PARENT2)) == (PARENT1 | PARENT2)) {
+                if ((commit.flags & RESULT) == 0) {
+                    commit.flags |= RESULT;
+                    results.add(commit);
+                }
+                flags |= STALE;
+            }
+            for (ObjectId parentId : commit.parents) {
+                Node parent = node(parentId);
+                if (parent == null || (parent.flags & flags) == flags) {
+                    continue;
+                }
+                parent.flags |= flags;
+                queue.add(parent);
+            }
+        }
+
+        results.removeIf(result -> isBelowOtherResult(result, results));
+        results.sort(NEWEST_FIRST);
+        List<ObjectId> ids = new ArrayList<>(results.size());
+        for (Node result : results) {
+            ids.add(result.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Checks whether the queue still holds a commit that is not below a common
+     * ancestor. The queue is only as wide as the number of lines of history
+     * being walked, so a scan is cheap.
+     */
+    private static boolean hasNonStale(PriorityQueue<Node> queue) {
+        for (Node commit : queue) {
+            if ((commit.flags & STALE) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a common ancestor is reachable from another one, in which
+     * case it is not a best common ancestor. The walk does not go below the
+     * candidate's generation.
+     */
+    private boolean isBelowOtherResult(Node candidate, List<Node> results) {
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        HashSet<ObjectId> seen = new HashSet<>();
+        for (Node result : results) {
+            if (result != candidate) {
+                pending.push(result);
+                seen.add(result.id);
+            }
+        }
+        while (!pending.isEmpty()) {
+            Node commit = pending.pop();
+            if (commit == candidate) {
+                return true;
+            }
+            if (commit.generation != GENERATION_INFINITY && commit.generation <= candidate.generation) {
+                continue;
+            }
+            for (ObjectId parentId : commit.parents) {
+                Node parent = node(parentId);
+                if (parent != null && seen.add(parentId)) {
+                    pending.push(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the walk state of a commit, loading it from the commit-graph or
+     * the object store on first use.
+     *
+     * @return The node, or null if the commit is missing.
+     */
+    private Node node(ObjectId id) {
+        Node node = nodes.get(id);
+        if (node != null) {
+            return node;
+        }
+        int position = graph != null ? graph.find(id) : -1;
+        if (position >= 0) {
+            List<ObjectId> parents = new ArrayList<>();
+            for (int parent : graph.parentsAt(position)) {
+                parents.add(graph.idAt(parent));
+            }
+            node = new Node(id, graph.generationAt(position), graph.commitTimeAt(position), parents);
+        } else {
+            Commit commit = commits.apply(id);
+            if (commit == null) {
+                return null;
+            }
+            node = new Node(id, GENERATION_INFINITY, commit.getTimestamp().getEpochSecond(), commit.getParentIds());
+        }
+        nodes.put(id, node);
+        return node;
+    }
+
+    /**
+     * A commit as seen by the walk.
+     */
+    private static final class Node {
+        final ObjectId id;
+        final int generation;
+        final long time;
+        final List<ObjectId> parents;
+        int flags;
+
+        Node(ObjectId id, int generation, long time, List<ObjectId> parents) {
+            this.id = id;
+            this.generation = generation;
+            this.time = time;
+            this.parents = parents;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package index;
+
+import objects.ObjectId;
+import utils.HashAlgorithm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The staging area, persisted as a binary file at {@code .git/index}.
+ *
+ * Entries are kept sorted by path and carry the stat data of the file they
+ * were staged from (see {@link IndexEntry}), so a file whose size, mtime, file
+ * key and mode are unchanged can be treated as unchanged without hashing it.
+ *
+ * The index also caches the tree id of every directory whose contents have
+ * not changed since its tree was last written. Adding or removing a file
+ * invalidates only the cached trees of the directories on its path, so a
+ * commit has to rebuild just those trees and can reuse every other one.
+ *
+ * File layout (all integers big-endian):
+ * - header: the signature {@code JIDX}, the format version, the id length
+ *   and the entry count,
+ * - per entry: size, mtime, file key, mode, the raw blob id and the path as
+ *   a length-prefixed UTF-8 string,
+ * - the cached trees: their count, then per tree the directory path (ending
+ *   in {@code /}, empty for the root) and the raw tree id,
+ * - a trailing checksum of everything before it, using the repository's hash
+ *   algorithm.
+ */
+public class Index {
+    private static final int SIGNATURE = 0x4a494458; // "JIDX"
+    private static final int VERSION = 2;
+
+    private final Path file;
+    private final HashAlgorithm algorithm;
+    private final TreeMap<String, IndexEntry> entries;
+    private final HashMap<String, ObjectId> cachedTrees;
+    private long writtenNanos;  // mtime of the index file, 0 if it was never written
+
+    private Index(Path file, HashAlgorithm algorithm) {
+        this.file = file;
+        this.algorithm = algorithm;
+        this.entries = new TreeMap<>();
+        this.cachedTrees = new HashMap<>();
+    }
+
+    /**
+     * Creates an empty index that will be saved to the given file.
+     *
+     * @param file      The index file.
+     * @param algorithm The hash algorithm of the repository.
+     * @return The empty index.
+     */
+    public static Index empty(Path file, HashAlgorithm algorithm) {
+        return new Index(file, algorithm);
+    }
+
+    /**
+     * Loads the index from disk. A missing file yields an empty index.
+     *
+     * @param file      The index file.
+     * @param algorithm The hash algorithm of the repository.
+     * @return The loaded index.
+     * @throws IOException If the file exists but could not be read or is corrupt.
+     */
+    public static Index load(Path file, HashAlgorithm algorithm) throws IOException {
+        Index index = empty(file, algorithm);
+        if (!Files.exists(file)) {
+            return index;
+        }
+
+        // Read whole and checksummed in one call, rather than a byte at a time as the fields are parsed
+        byte[] content = Files.readAllBytes(file);
+        MessageDigest digest = algorithm.newDigest();
+        int checksumStart = content.length - digest.getDigestLength();
+        if (checksumStart < 0) {
+            throw new IOException("Truncated index: " + file);
+        }
+        digest.update(content, 0, checksumStart);
+        if (!Arrays.equals(digest.digest(), 0, digest.getDigestLength(), content, checksumStart, content.length)) {
+            throw new IOException("Index checksum mismatch: " + file);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, 0, checksumStart))) {
+            if (in.readInt() != SIGNATURE) {
+                throw new IOException("Unsupported index format: " + file);
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported index version " + version + ": " + file);
+            }
+            int idLength = in.readInt();
+            if (idLength != algorithm.getRawLength()) {
+                throw new IOException("Index uses " + idLength + "-byte ids, repository uses "
+                        + algorithm.getRawLength());
+            }
+            index.writtenNanos = Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+            int count = in.readInt();
+
+            byte[] raw = new byte[idLength];
+            for (int i = 0; i < count; i++) {
+                long size = in.readLong();
+                long modifiedNanos = in.readLong();
+                int fileKey = in.readInt();
+                int mode = in.readInt();
+                in.readFully(raw);
+                String path = in.readUTF();
+                index.entries.put(path, new IndexEntry(path, ObjectId.fromRaw(raw), size, modifiedNanos, fileKey, mode));
+            }
+            if (version >= 2) {
+                int trees = in.readInt();
+                for (int i = 0; i < trees; i++) {
+                    String dir = in.readUTF();
+                    in.readFully(raw);
+                    index.cachedTrees.put(dir, ObjectId.fromRaw(raw));
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated index: " + file);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index to disk, replacing the previous file atomically.
+     *
+     * @throws IOException If the index could not be written.
+     */
+    public void save() throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), "index", ".tmp");
+        try {
+            MessageDigest digest = algorithm.newDigest();
+            DigestOutputStream digestOut = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 65536), digest);
+            try (DataOutputStream out = new DataOutputStream(digestOut)) {
+                out.writeInt(SIGNATURE);
+                out.writeInt(VERSION);
+                out.writeInt(algorithm.getRawLength());
+                out.writeInt(entries.size());
+
+                byte[] raw = new byte[algorithm.getRawLength()];
+                for (IndexEntry entry : entries.values()) {
+                    out.writeLong(entry.getSize());
+                    out.writeLong(entry.getModifiedNanos());
+                    out.writeInt(entry.getFileKey());
+                    out.writeInt(entry.getMode());
+                    entry.getId().copyRawTo(raw, 0);
+                    out.write(raw);
+                    out.writeUTF(entry.getPath());
+                }
+                out.writeInt(cachedTrees.size());
+                for (var tree : cachedTrees.entrySet()) {
+                    out.writeUTF(tree.getKey());
+                    tree.getValue().copyRawTo(raw, 0);
+                    out.write(raw);
+                }
+
+                digestOut.on(false);
+                out.write(digest.digest());
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            writtenNanos = Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Checks whether the stat data recorded for an entry proves the file unchanged.
+     *
+     * A file modified in the same timestamp tick as the index file was written
+     * could have changed after it was hashed without its mtime showing it. Such
+     * "racily clean" entries are never trusted, so the caller falls back to
+     * hashing. Comparing against the index file's own mtime keeps both sides at
+     * the file system's timestamp granularity.
+     *
+     * @param entry The index entry.
+     * @param file  The file on disk.
+     * @param attrs The file's current attributes.
+     * @return true if the file can be assumed to still match the entry's blob.
+     */
+    public boolean isUpToDate(IndexEntry entry, Path file, BasicFileAttributes attrs) {
+        return entry.matches(file, attrs) && entry.getModifiedNanos() < writtenNanos;
+    }
+
+    /**
+     * Returns the entry for a path.
+     *
+     * @param path The {@code /}-separated path.
+     * @return The entry, or null if the path is not in the index.
+     */
+    public IndexEntry get(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Adds or replaces an entry. Unless only the stat data changed, the cached
+     * trees of the directories containing the path are invalidated.
+     *
+     * @param entry The entry.
+     */
+    public void put(IndexEntry entry) {
+        IndexEntry previous = entries.put(entry.getPath(), entry);
+        if (previous == null || !previous.getId().equals(entry.getId()) || previous.getMode() != entry.getMode()) {
+            invalidateTrees(entry.getPath());
+        }
+    }
+
+    /**
+     * Removes the entry for a path, invalidating the cached trees of the
+     * directories containing it.
+     *
+     * @param path The {@code /}-separated path.
+     * @return The removed entry, or null if the path was not in the index.
+     */
+    public IndexEntry remove(String path) {
+        IndexEntry removed = entries.remove(path);
+        if (removed != null) {
+            invalidateTrees(path);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the cached tree id of a directory.
+     *
+     * @param dir The directory path followed by {@code /}, or empty for the root.
+     * @return The tree id, or null if the directory changed since its tree was cached.
+     */
+    public ObjectId getCachedTree(String dir) {
+        return cachedTrees.get(dir);
+    }
+
+    /**
+     * Caches the tree id of a directory. The tree must describe exactly the
+     * entries currently in the index below that directory.
+     *
+     * @param dir    The directory path followed by {@code /}, or empty for the root.
+     * @param treeId The id of the directory's tree.
+     */
+    public void putCachedTree(String dir, ObjectId treeId) {
+        cachedTrees.put(dir, treeId);
+    }
+
+    /**
+     * Drops the cached trees of the root and of every directory containing a path.
+     *
+     * @param path The {@code /}-separated path of a file.
+     */
+    private void invalidateTrees(String path) {
+        if (cachedTrees.isEmpty()) {
+            return;
+        }
+        cachedTrees.remove("");
+        for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+            cachedTrees.remove(path.substring(0, slash + 1));
+        }
+    }
+
+    /**
+     * Checks whether the index contains a path.
+     *
+     * @param path The {@code /}-separated path.
+     * @return true if the path is in the index.
+     */
+    public boolean contains(String path) {
+        return entries.containsKey(path);
+    }
+
+    /**
+     * Removes all entries and cached trees.
+     */
+    public void clear() {
+        entries.clear();
+        cachedTrees.clear();
+    }
+
+    /**
+     * Checks whether the index has no entries.
+     *
+     * @return true if the index is empty.
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The entry count.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns all entries, sorted by path.
+     *
+     * @return An unmodifiable view of the entries.
+     */
+    public Collection<IndexEntry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+}
@@ -0,0 +1,153 @@
+package index;
+
+import objects.ObjectId;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single file recorded in the index: its path, the id of its staged blob and
+ * the stat data the file had when it was hashed.
+ *
+ * The stat data (size, modification time, file key and mode) lets status and
+ * add recognize a file as unchanged without reading and rehashing it.
+ */
+public class IndexEntry {
+    /** Mode of a regular, non-executable file. */
+    public static final int MODE_FILE = 0100644;
+    /** Mode of an executable file. */
+    public static final int MODE_EXECUTABLE = 0100755;
+    /** Mode of a symbolic link. */
+    public static final int MODE_SYMLINK = 0120000;
+
+    private final String path;
+    private final ObjectId id;
+    private final long size;
+    private final long modifiedNanos;
+    private final int fileKey;
+    private final int mode;
+
+    /**
+     * Creates an index entry.
+     *
+     * @param path          The {@code /}-separated path relative to the repository root.
+     * @param id            The id of the staged blob.
+     * @param size          The file size in bytes.
+     * @param modifiedNanos The last-modified time in nanoseconds since the epoch.
+     * @param fileKey       A hash of the file key (device and inode on Unix), or 0 if unavailable.
+     * @param mode          The file mode, one of the {@code MODE_*} constants.
+     */
+    public IndexEntry(String path, ObjectId id, long size, long modifiedNanos, int fileKey, int mode) {
+        this.path = path;
+        this.id = id;
+        this.size = size;
+        this.modifiedNanos = modifiedNanos;
+        this.fileKey = fileKey;
+        this.mode = mode;
+    }
+
+    /**
+     * Creates an index entry for a file from its current attributes.
+     *
+     * @param path  The {@code /}-separated path relative to the repository root.
+     * @param id    The id of the file's blob.
+     * @param file  The file on disk.
+     * @param attrs The attributes read from the file before it was hashed; reading
+     *              {@link PosixFileAttributes} where available saves a syscall for the mode.
+     * @return The entry.
+     */
+    public static IndexEntry of(String path, ObjectId id, Path file, BasicFileAttributes attrs) {
+        return new IndexEntry(path, id, attrs.size(), modifiedNanos(attrs), fileKey(attrs), mode(file, attrs));
+    }
+
+    /**
+     * Returns the path of the entry.
+     *
+     * @return The {@code /}-separated path relative to the repository root.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the id of the staged blob.
+     *
+     * @return The blob id.
+     */
+    public ObjectId getId() {
+        return id;
+    }
+
+    /**
+     * Returns the size the file had when it was staged.
+     *
+     * @return The size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the modification time the file had when it was staged.
+     *
+     * @return The time in nanoseconds since the epoch.
+     */
+    public long getModifiedNanos() {
+        return modifiedNanos;
+    }
+
+    /**
+     * Returns the hash of the file key the file had when it was staged.
+     *
+     * @return The file key hash, or 0 if unavailable.
+     */
+    public int getFileKey() {
+        return fileKey;
+    }
+
+    /**
+     * Returns the mode of the file.
+     *
+     * @return One of the {@code MODE_*} constants.
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Checks whether the stat data of a file still matches this entry.
+     *
+     * @param file  The file on disk.
+     * @param attrs The file's current attributes.
+     * @return true if size, modification time, file key and mode are unchanged.
+     */
+    public boolean matches(Path file, BasicFileAttributes attrs) {
+        return size == attrs.size()
+                && modifiedNanos == modifiedNanos(attrs)
+                && fileKey == fileKey(attrs)
+                && mode == mode(file, attrs);
+    }
+
+    private static long modifiedNanos(BasicFileAttributes attrs) {
+        return attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static int fileKey(BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        return key == null ? 0 : key.hashCode();
+    }
+
+    private static int mode(Path file, BasicFileAttributes attrs) {
+        if (attrs.isSymbolicLink()) {
+            return MODE_SYMLINK;
+        }
+        if (attrs instanceof PosixFileAttributes posix) {
+            return posix.permissions().contains(PosixFilePermission.OWNER_EXECUTE) ? MODE_EXECUTABLE : MODE_FILE;
+        }
+        return Files.isExecutable(file) ? MODE_EXECUTABLE : MODE_FILE;
+    }
+}
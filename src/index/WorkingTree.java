@@ -0,0 +1,138 @@
+package index;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scans the files of a working tree.
+ *
+ * Directories are listed in parallel on the common fork/join pool, one task per
+ * directory, and each entry is stat'ed exactly once. The attributes are read as
+ * {@link PosixFileAttributes} where supported, so the result carries everything
+ * {@link IndexEntry#matches} needs without touching the files again.
+ */
+public final class WorkingTree {
+    private WorkingTree() {
+    }
+
+    /**
+     * Lists all regular files below a repository root, skipping {@code .git} directories.
+     *
+     * @param root The repository root.
+     * @return The attributes of every file, keyed by {@code /}-separated path relative to the root.
+     */
+    public static Map<String, BasicFileAttributes> scan(Path root) {
+        ConcurrentHashMap<String, BasicFileAttributes> files = new ConcurrentHashMap<>();
+        ForkJoinPool.commonPool().invoke(new ScanTask(root, "", files));
+        return files;
+    }
+
+    /**
+     * Reads the attributes of a file in a single call, as POSIX attributes where
+     * the file system supports them so the mode comes with the same stat.
+     * Symbolic links are not followed.
+     *
+     * @param file The file.
+     * @return The file's attributes.
+     * @throws IOException If the attributes could not be read.
+     */
+    public static BasicFileAttributes readAttributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    /**
+     * Makes a file executable or not. An executable file gets the execute bit
+     * for its owner and for everyone else who can read it, as git does when it
+     * checks out a file of mode {@link IndexEntry#MODE_EXECUTABLE}; otherwise
+     * all execute bits are cleared.
+     *
+     * @param file       The file.
+     * @param executable Whether the file should be executable.
+     * @throws IOException If the permissions could not be changed.
+     */
+    public static void setExecutable(Path file, boolean executable) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (view == null) {
+            if (!file.toFile().setExecutable(executable, false)) {
+                throw new IOException("Cannot change the permissions of " + file);
+            }
+            return;
+        }
+        Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+        if (executable) {
+            permissions.add(PosixFilePermission.OWNER_EXECUTE);
+            if (permissions.contains(PosixFilePermission.GROUP_READ)) {
+                permissions.add(PosixFilePermission.GROUP_EXECUTE);
+            }
+            if (permissions.contains(PosixFilePermission.OTHERS_READ)) {
+                permissions.add(PosixFilePermission.OTHERS_EXECUTE);
+            }
+        } else {
+            permissions.remove(PosixFilePermission.OWNER_EXECUTE);
+            permissions.remove(PosixFilePermission.GROUP_EXECUTE);
+            permissions.remove(PosixFilePermission.OTHERS_EXECUTE);
+        }
+        view.setPermissions(permissions);
+    }
+
+    /**
+     * Lists one directory, recording its files and forking a task per subdirectory.
+     */
+    @SuppressWarnings("serial")
+    private static class ScanTask extends RecursiveAction {
+        private final Path dir;
+        private final String prefix;
+        private final Map<String, BasicFileAttributes> files;
+
+        ScanTask(Path dir, String prefix, Map<String, BasicFileAttributes> files) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanTask> subdirs = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = readAttributes(entry);
+                    } catch (IOException e) {
+                        // Removed while the directory was being listed
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (!name.equals(".git")) {
+                            subdirs.add(new ScanTask(entry, prefix + name + "/", files));
+                        }
+                    } else if (attrs.isRegularFile()) {
+                        files.put(prefix + name, attrs);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading " + dir + ": " + e.getMessage());
+            }
+            invokeAll(subdirs);
+        }
+    }
+}
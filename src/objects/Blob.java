@@ -1,5 +1,7 @@
 package objects;
 
+import utils.HashAlgorithm;
+
 /**
  * Represents a Blob object in a Git-like implementation.
  * A Blob is used to store file contents in the repository.
@@ -14,10 +16,20 @@ public class Blob extends Object {
         super("blob", content);
     }
 
+    /**
+     * Creates a Blob object with the given content, named with the given algorithm.
+     *
+     * @param algorithm The hash algorithm used to compute the blob's id.
+     * @param content   The content of the blob (file content).
+     */
+    public Blob(HashAlgorithm algorithm, String content) {
+        super(algorithm, "blob", content);
+    }
+
     @Override
     public String toString() {
         return "Blob{" +
-                "hash='" + getHash() + '\'' +
+                "id='" + getId() + '\'' +
                 ", content='" + getContent() + '\'' +
                 '}';
     }
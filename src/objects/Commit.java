@@ -1,52 +1,142 @@
 package objects;
 
+import utils.HashAlgorithm;
+
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a Commit object in a Git-like system.
  * Each commit points to a tree (representing the snapshot of the file
- * system), the parent commit (for history), and contains metadata such
- * as the author, timestamp, and commit message.
+ * system), its parent commits (for history), and contains metadata such
+ * as the author, timestamp, and commit message. The first commit has no
+ * parent, a merge commit has two or more; the first parent is the commit
+ * that was checked out when the commit was made.
  */
 public class Commit extends Object {
-    private final String treeHash;
-    private final String parentHash;  // null if it is the first commit
+    private final ObjectId treeId;
+    private final List<ObjectId> parentIds;  // empty for the first commit
     private final String author;
     private final Instant timestamp;
     private final String message;
 
     /**
-     * Constructor to create a Commit object.
+     * Constructor to create a Commit object made now.
+     * The commit is named with the same hash algorithm that produced its tree id.
+     *
+     * @param treeId      The id of the root tree object this commit refers to.
+     * @param parentId    The id of the parent commit (can be null for the first commit).
+     * @param author      The author of this commit.
+     * @param message     A message describing this commit.
+     */
+    public Commit(ObjectId treeId, ObjectId parentId, String author, String message) {
+        this(treeId, parentId, author, Instant.now(), message);
+    }
+
+    /**
+     * Constructor to create a Commit object with a given timestamp.
+     * The commit is named with the same hash algorithm that produced its tree id.
      *
-     * @param treeHash    The hash of the root tree object this commit refers to.
-     * @param parentHash  The hash of the parent commit (can be null for the first commit).
+     * @param treeId      The id of the root tree object this commit refers to.
+     * @param parentId    The id of the parent commit (can be null for the first commit).
      * @param author      The author of this commit.
+     * @param timestamp   The time the commit was made.
      * @param message     A message describing this commit.
      */
-    public Commit(String treeHash, String parentHash, String author, String message) {
-        super("commit", buildContent(treeHash, parentHash, author, Instant.now(), message));
-        this.treeHash = treeHash;
-        this.parentHash = parentHash;
+    public Commit(ObjectId treeId, ObjectId parentId, String author, Instant timestamp, String message) {
+        this(treeId, parentId != null ? List.of(parentId) : List.of(), author, timestamp, message);
+    }
+
+    /**
+     * Constructor to create a Commit object with any number of parents.
+     * The commit is named with the same hash algorithm that produced its tree id.
+     *
+     * @param treeId      The id of the root tree object this commit refers to.
+     * @param parentIds   The ids of the parent commits, first parent first (empty for the first commit).
+     * @param author      The author of this commit.
+     * @param timestamp   The time the commit was made.
+     * @param message     A message describing this commit.
+     */
+    public Commit(ObjectId treeId, List<ObjectId> parentIds, String author, Instant timestamp, String message) {
+        super(HashAlgorithm.forRawLength(treeId.rawLength()), "commit",
+                buildContent(treeId, parentIds, author, timestamp, message));
+        this.treeId = treeId;
+        this.parentIds = List.copyOf(parentIds);
+        this.author = author;
+        this.timestamp = timestamp;
+        this.message = message;
+    }
+
+    private Commit(ObjectId id, String content, ObjectId treeId, List<ObjectId> parentIds, String author,
+                   Instant timestamp, String message) {
+        super("commit", content, id);
+        this.treeId = treeId;
+        this.parentIds = List.copyOf(parentIds);
         this.author = author;
-        this.timestamp = Instant.now();
+        this.timestamp = timestamp;
         this.message = message;
     }
 
+    /**
+     * Parses the content of a stored commit object.
+     * The parsed commit keeps the id it was read by and the stored content, so
+     * reading a commit does not hash it again.
+     *
+     * @param id      The id the commit was read by.
+     * @param content The content of the commit object.
+     * @return The commit.
+     * @throws IllegalArgumentException If the content is not a valid commit.
+     */
+    public static Commit parse(ObjectId id, String content) {
+        ObjectId treeId = null;
+        List<ObjectId> parentIds = new ArrayList<>();
+        String author = null;
+        Instant timestamp = null;
+        int start = 0;
+        while (start < content.length() && content.charAt(start) != '\n') {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Commit has no message");
+            }
+            String line = content.substring(start, end);
+            int space = line.indexOf(' ');
+            String key = space < 0 ? line : line.substring(0, space);
+            String value = space < 0 ? "" : line.substring(space + 1);
+            switch (key) {
+                case "tree" -> treeId = ObjectId.fromHex(value);
+                case "parent" -> parentIds.add(ObjectId.fromHex(value));
+                case "author" -> author = value;
+                case "date" -> timestamp = Instant.parse(value);
+                default -> throw new IllegalArgumentException("Unknown commit header: " + key);
+            }
+            start = end + 1;
+        }
+        if (treeId == null || author == null || timestamp == null || start >= content.length()) {
+            throw new IllegalArgumentException("Incomplete commit");
+        }
+        String message = content.substring(start + 1);
+        if (message.endsWith("\n")) {
+            message = message.substring(0, message.length() - 1);
+        }
+        return new Commit(id, content, treeId, parentIds, author, timestamp, message);
+    }
+
     /**
      * Helper method to construct the content of a commit object.
      *
-     * @param treeHash    The hash of the tree object.
-     * @param parentHash  The hash of the parent commit, or null if this is the first commit.
+     * @param treeId      The id of the tree object.
+     * @param parentIds   The ids of the parent commits, empty if this is the first commit.
      * @param author      The author of the commit.
      * @param timestamp   The timestamp of the commit.
      * @param message     The commit message.
      * @return The formatted content for the commit.
      */
-    private static String buildContent(String treeHash, String parentHash, String author, Instant timestamp, String message) {
+    private static String buildContent(ObjectId treeId, List<ObjectId> parentIds, String author, Instant timestamp, String message) {
         StringBuilder contentBuilder = new StringBuilder();
-        contentBuilder.append("tree ").append(treeHash).append("\n");
-        if (parentHash != null) {
-            contentBuilder.append("parent ").append(parentHash).append("\n");
+        contentBuilder.append("tree ").append(treeId.name()).append("\n");
+        for (ObjectId parentId : parentIds) {
+            contentBuilder.append("parent ").append(parentId.name()).append("\n");
         }
         contentBuilder.append("author ").append(author).append("\n");
         contentBuilder.append("date ").append(timestamp.toString()).append("\n\n");
@@ -55,21 +145,30 @@ public class Commit extends Object {
     }
 
     /**
-     * Returns the hash of the tree object associated with this commit.
+     * Returns the id of the tree object associated with this commit.
+     *
+     * @return The tree id.
+     */
+    public ObjectId getTreeId() {
+        return treeId;
+    }
+
+    /**
+     * Returns the id of the first parent commit.
      *
-     * @return The tree hash.
+     * @return The first parent's id or null for the first commit.
      */
-    public String getTreeHash() {
-        return treeHash;
+    public ObjectId getParentId() {
+        return parentIds.isEmpty() ? null : parentIds.get(0);
     }
 
     /**
-     * Returns the hash of the parent commit.
+     * Returns the ids of all parent commits.
      *
-     * @return The parent commit hash or null for the first commit.
+     * @return The parent ids, first parent first; empty for the first commit.
      */
-    public String getParentHash() {
-        return parentHash;
+    public List<ObjectId> getParentIds() {
+        return parentIds;
     }
 
     /**
@@ -102,9 +201,10 @@ public class Commit extends Object {
     @Override
     public String toString() {
         return "Commit{" +
-                "hash='" + getHash() + '\'' +
-                ", treeHash='" + treeHash + '\'' +
-                ", parentHash='" + parentHash + '\'' +
+                "id='" + getId() + '\'' +
+                ", treeId='" + treeId + '\'' +
+                ", parentId='" + getParentId() + '\'' +
+                (parentIds.size() > 1 ? ", mergedIds=" + parentIds.subList(1, parentIds.size()) : "") +
                 ", author='" + author + '\'' +
                 ", timestamp=" + timestamp +
                 ", message='" + message + '\'' +
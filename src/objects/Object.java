@@ -1,22 +1,50 @@
 package objects;
 
+import utils.HashAlgorithm;
 import utils.Hasher;
 
+import java.nio.charset.StandardCharsets;
+
 public class Object {
     private final String type;    // type => blob, tree, commit, tag
     private final String content;
-    private final String hash;
+    private final ObjectId id;
 
     /**
-     * Constructor to create an Object (Git Object).
+     * Constructor to create an Object (Git Object) named with SHA-1.
      *
      * @param type    The type of the object (e.g., "blob", "tree", "commit").
      * @param content The content of the object.
      */
     public Object(String type, String content) {
+        this(HashAlgorithm.SHA1, type, content);
+    }
+
+    /**
+     * Constructor to create an Object (Git Object).
+     *
+     * @param algorithm The hash algorithm used to compute the object's id.
+     * @param type      The type of the object (e.g., "blob", "tree", "commit").
+     * @param content   The content of the object.
+     */
+    public Object(HashAlgorithm algorithm, String type, String content) {
+        this.type = type;
+        this.content = content;
+        this.id = computeId(algorithm);
+    }
+
+    /**
+     * Constructor for an Object read back from the object store, whose id is
+     * already known from the lookup. The content is not hashed again.
+     *
+     * @param type    The type of the object (e.g., "tree", "commit").
+     * @param content The content of the object as stored.
+     * @param id      The id the object was stored under.
+     */
+    Object(String type, String content, ObjectId id) {
         this.type = type;
         this.content = content;
-        this.hash = computeHash();
+        this.id = id;
     }
 
     /**
@@ -38,28 +66,29 @@ public class Object {
     }
 
     /**
-     * Get the hash of the object.
+     * Get the id of the object.
      *
-     * @return The unique hash of the object.
+     * @return The unique id of the object.
      */
-    public String getHash() {
-        return hash;
+    public ObjectId getId() {
+        return id;
     }
 
     /**
-     * Computes the hash for the object by combining:
+     * Computes the id for the object by hashing:
      * - Type
      * - Size of the content
      * - Content itself
      *
      * This mimics Git's behavior of hashing objects.
      *
-     * @return The computed hash of the object.
+     * @param algorithm The hash algorithm to use.
+     * @return The computed id of the object.
      */
-    private String computeHash() {
-        // Format: "<type> <size>\0<content>"
-        String objectData = type + " " + content.length() + "\0" + content;
-        return Hasher.computeSHA1(objectData);
+    private ObjectId computeId(HashAlgorithm algorithm) {
+        // Format: "<type> <size>\0<content>", where size is the content length in bytes
+        String objectData = type + " " + content.getBytes(StandardCharsets.UTF_8).length + "\0" + content;
+        return ObjectId.fromRaw(Hasher.digest(algorithm, objectData));
     }
 
     @Override
@@ -67,7 +96,7 @@ public class Object {
         return "GitObject{" +
                 "type='" + type + '\'' +
                 ", content='" + content + '\'' +
-                ", hash='" + hash + '\'' +
+                ", id='" + id + '\'' +
                 '}';
     }
 }
\ No newline at end of file
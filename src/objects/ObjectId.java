@@ -0,0 +1,316 @@
+package objects;
+
+import utils.Hasher;
+
+import java.util.Arrays;
+
+/**
+ * The identity of an object: the digest of its framed content, 20 bytes for
+ * SHA-1 repositories and 32 bytes for SHA-256 ones.
+ *
+ * The id is held as big-endian ints rather than a hex string, which keeps it
+ * small as a map key and makes {@code equals}, {@code hashCode} and ordering a
+ * handful of int operations. The first five words are stored inline, which
+ * covers a whole SHA-1 id; the three further words of a SHA-256 id live in a
+ * small side array. Hex is only produced when an id is shown to the user or
+ * written to a text file.
+ */
+public final class ObjectId implements Comparable<ObjectId> {
+    private static final int INLINE_WORDS = 5;
+
+    private final int w0;
+    private final int w1;
+    private final int w2;
+    private final int w3;
+    private final int w4;
+    private final int[] extra;  // null for 20-byte ids
+
+    private ObjectId(int w0, int w1, int w2, int w3, int w4, int[] extra) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+        this.w4 = w4;
+        this.extra = extra;
+    }
+
+    /**
+     * Creates an id from its raw bytes.
+     *
+     * @param raw The 20 or 32 id bytes.
+     * @return The id.
+     */
+    public static ObjectId fromRaw(byte[] raw) {
+        return fromRaw(raw, 0, raw.length);
+    }
+
+    /**
+     * Creates an id from raw bytes stored at an offset in a larger array.
+     *
+     * @param raw    The array holding the id.
+     * @param offset The position of the first id byte.
+     * @param length The length of the id, 20 or 32 bytes.
+     * @return The id.
+     */
+    public static ObjectId fromRaw(byte[] raw, int offset, int length) {
+        int[] extra = null;
+        if (length != 20) {
+            if (length != 32) {
+                throw new IllegalArgumentException("Invalid object id length: " + length);
+            }
+            extra = new int[]{readInt(raw, offset + 20), readInt(raw, offset + 24), readInt(raw, offset + 28)};
+        }
+        return new ObjectId(readInt(raw, offset), readInt(raw, offset + 4), readInt(raw, offset + 8),
+                readInt(raw, offset + 12), readInt(raw, offset + 16), extra);
+    }
+
+    /**
+     * Parses a hexadecimal id of 40 (SHA-1) or 64 (SHA-256) characters.
+     *
+     * @param hex The id in hexadecimal.
+     * @return The id.
+     * @throws IllegalArgumentException If the string is not a valid id.
+     */
+    public static ObjectId fromHex(String hex) {
+        if (!isHex(hex)) {
+            throw new IllegalArgumentException("Invalid object id: " + hex);
+        }
+        int[] extra = null;
+        if (hex.length() == 64) {
+            extra = new int[]{parseWord(hex, 40), parseWord(hex, 48), parseWord(hex, 56)};
+        }
+        return new ObjectId(parseWord(hex, 0), parseWord(hex, 8), parseWord(hex, 16),
+                parseWord(hex, 24), parseWord(hex, 32), extra);
+    }
+
+    /**
+     * Checks whether a string is a full-length hexadecimal id.
+     *
+     * @param hex The string to check.
+     * @return true if it can be parsed with {@link #fromHex(String)}.
+     */
+    public static boolean isHex(String hex) {
+        if (hex == null || (hex.length() != 40 && hex.length() != 64)) {
+            return false;
+        }
+        for (int i = 0; i < hex.length(); i++) {
+            if (Hasher.hexValue(hex.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a string can be an abbreviated id: at least four and at
+     * most 64 hexadecimal characters.
+     *
+     * @param prefix The string to check.
+     * @return true if the string can be resolved as an id prefix.
+     */
+    public static boolean isAbbreviation(String prefix) {
+        if (prefix == null || prefix.length() < 4 || prefix.length() > 64) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Hasher.hexValue(prefix.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the hexadecimal form of this id starts with a prefix,
+     * without formatting the id.
+     *
+     * @param prefix A hexadecimal prefix, in either case.
+     * @return true if the id starts with the prefix.
+     */
+    public boolean startsWith(String prefix) {
+        if (prefix.length() > rawLength() * 2) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            int nibble = (word(i / 8) >>> (28 - 4 * (i % 8))) & 0xf;
+            if (Hasher.hexValue(prefix.charAt(i)) != nibble) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the length of the id in bytes.
+     *
+     * @return 20 for SHA-1 ids, 32 for SHA-256 ids.
+     */
+    public int rawLength() {
+        return wordCount() * 4;
+    }
+
+    /**
+     * Returns the number of 4-byte words in the id.
+     *
+     * @return 5 for SHA-1 ids, 8 for SHA-256 ids.
+     */
+    public int wordCount() {
+        return extra == null ? INLINE_WORDS : INLINE_WORDS + extra.length;
+    }
+
+    /**
+     * Returns one of the big-endian words of the id.
+     *
+     * @param index The word index, 0 to {@link #wordCount()} - 1.
+     * @return The word.
+     */
+    public int word(int index) {
+        return switch (index) {
+            case 0 -> w0;
+            case 1 -> w1;
+            case 2 -> w2;
+            case 3 -> w3;
+            case 4 -> w4;
+            default -> {
+                if (extra == null || index >= INLINE_WORDS + extra.length) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                yield extra[index - INLINE_WORDS];
+            }
+        };
+    }
+
+    /**
+     * Returns the first byte of the id, as used by fan-out tables and loose object directories.
+     *
+     * @return The first byte, 0 to 255.
+     */
+    public int firstByte() {
+        return w0 >>> 24;
+    }
+
+    /**
+     * Returns the raw bytes of the id.
+     *
+     * @return A new array of {@link #rawLength()} bytes.
+     */
+    public byte[] toRaw() {
+        byte[] raw = new byte[rawLength()];
+        copyRawTo(raw, 0);
+        return raw;
+    }
+
+    /**
+     * Copies the raw bytes of the id into an array.
+     *
+     * @param dst    The destination array.
+     * @param offset The position to write the first byte to.
+     */
+    public void copyRawTo(byte[] dst, int offset) {
+        writeInt(dst, offset, w0);
+        writeInt(dst, offset + 4, w1);
+        writeInt(dst, offset + 8, w2);
+        writeInt(dst, offset + 12, w3);
+        writeInt(dst, offset + 16, w4);
+        if (extra != null) {
+            for (int i = 0; i < extra.length; i++) {
+                writeInt(dst, offset + 20 + 4 * i, extra[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the id in hexadecimal.
+     *
+     * @return The lowercase hex string, 40 or 64 characters long.
+     */
+    public String name() {
+        char[] hex = new char[rawLength() * 2];
+        Hasher.toHex(w0, hex, 0);
+        Hasher.toHex(w1, hex, 8);
+        Hasher.toHex(w2, hex, 16);
+        Hasher.toHex(w3, hex, 24);
+        Hasher.toHex(w4, hex, 32);
+        if (extra != null) {
+            for (int i = 0; i < extra.length; i++) {
+                Hasher.toHex(extra[i], hex, 40 + 8 * i);
+            }
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int cmp = Integer.compareUnsigned(w0, other.w0);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Integer.compareUnsigned(w1, other.w1);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Integer.compareUnsigned(w2, other.w2);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Integer.compareUnsigned(w3, other.w3);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Integer.compareUnsigned(w4, other.w4);
+        if (cmp != 0 || (extra == null && other.extra == null)) {
+            return cmp;
+        }
+        int words = Math.min(wordCount(), other.wordCount());
+        for (int i = INLINE_WORDS; i < words; i++) {
+            cmp = Integer.compareUnsigned(word(i), other.word(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(wordCount(), other.wordCount());
+    }
+
+    @Override
+    public boolean equals(java.lang.Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ObjectId other)) {
+            return false;
+        }
+        return w0 == other.w0 && w1 == other.w1 && w2 == other.w2 && w3 == other.w3 && w4 == other.w4
+                && Arrays.equals(extra, other.extra);
+    }
+
+    @Override
+    public int hashCode() {
+        // The id is already a cryptographic hash, so any word is evenly distributed
+        return w1;
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return (b[offset] & 0xff) << 24 | (b[offset + 1] & 0xff) << 16
+                | (b[offset + 2] & 0xff) << 8 | (b[offset + 3] & 0xff);
+    }
+
+    private static void writeInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    private static int parseWord(String hex, int offset) {
+        int value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 4 | Hasher.hexValue(hex.charAt(offset + i));
+        }
+        return value;
+    }
+}
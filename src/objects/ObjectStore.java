@@ -0,0 +1,384 @@
+package objects;
+
+import pack.PackReader;
+import pack.PackWriter;
+import pack.PackedObject;
+import utils.HashAlgorithm;
+import utils.Hasher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed object database stored under {@code .git/objects}.
+ *
+ * Every object is written to its own file named after its id, split into a
+ * two-character directory and the remaining characters, e.g.
+ * {@code .git/objects/ab/cdef...}. Writing an object that already exists is a
+ * no-op, so a commit only ever writes the objects it introduces, and reads
+ * fetch a single object on demand instead of loading the whole history.
+ *
+ * Objects are stored zlib-compressed in the same {@code "<type> <size>\0<content>"}
+ * framing that is hashed to produce their identity, and are read back through
+ * an inflating stream so large blobs never have to be held in memory.
+ *
+ * Objects that are not loose are looked up in the packs under
+ * {@code .git/objects/pack}, which {@link #repack} produces by delta-compressing
+ * successive versions of each file against each other. A packed object stored
+ * whole is streamed from the pack the same way; only a delta is rebuilt in
+ * memory, from its base and the delta, before it is read.
+ */
+public class ObjectStore {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path objectsDir;
+    private final HashAlgorithm algorithm;
+    private List<PackReader> packs;
+
+    /**
+     * Creates an object store rooted at the given directory.
+     *
+     * @param objectsDir The {@code .git/objects} directory.
+     * @param algorithm  The hash algorithm objects are named with.
+     */
+    public ObjectStore(Path objectsDir, HashAlgorithm algorithm) {
+        this.objectsDir = objectsDir;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Checks whether an object with the given id is present in the store.
+     *
+     * @param id The id of the object.
+     * @return true if the object exists, false otherwise.
+     */
+    public boolean contains(ObjectId id) {
+        if (Files.exists(pathFor(id))) {
+            return true;
+        }
+        try {
+            for (PackReader pack : packs()) {
+                if (pack.contains(id)) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading packs: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Finds the objects whose ids start with an abbreviated id.
+     *
+     * Loose objects are found by listing the single directory named after the
+     * first two characters, and packed objects by a binary search in each pack
+     * index, so the cost does not grow with the number of objects.
+     *
+     * @param prefix An abbreviated id of at least four hexadecimal characters.
+     * @return The matching ids in sorted order.
+     * @throws IOException If a directory or pack could not be read.
+     */
+    public SortedSet<ObjectId> findByPrefix(String prefix) throws IOException {
+        String lower = prefix.toLowerCase();
+        TreeSet<ObjectId> matches = new TreeSet<>();
+        Path dir = objectsDir.resolve(lower.substring(0, 2));
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, lower.substring(2) + "*")) {
+                for (Path file : files) {
+                    String hex = lower.substring(0, 2) + file.getFileName();
+                    if (ObjectId.isHex(hex)) {
+                        matches.add(ObjectId.fromHex(hex));
+                    }
+                }
+            }
+        }
+        for (PackReader pack : packs()) {
+            matches.addAll(pack.findByPrefix(lower));
+        }
+        return matches;
+    }
+
+    /**
+     * Writes an object to the store if it is not already present.
+     * The file is written to a temporary name first and then moved into place,
+     * so a reader never observes a partially written object.
+     *
+     * @param object The object to store.
+     * @throws IOException If the object could not be written.
+     */
+    public void write(Object object) throws IOException {
+        Path target = pathFor(object.getId());
+        if (Files.exists(target)) {
+            return;
+        }
+
+        byte[] content = object.getContent().getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "tmp_obj_", null);
+        try {
+            try (OutputStream out = deflate(Files.newOutputStream(temp))) {
+                out.write(Hasher.objectHeader(object.getType(), content.length));
+                out.write(content);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Stores a file as a blob, streaming it from disk.
+     * The file is hashed first and only compressed into the store if the blob
+     * is not already present, so re-adding unchanged files costs one read.
+     *
+     * @param file The file to store.
+     * @return The id of the blob.
+     * @throws IOException If the file could not be read or the blob could not be written.
+     */
+    public ObjectId writeBlob(Path file) throws IOException {
+        ObjectId id = ObjectId.fromRaw(Hasher.digest(algorithm, file, "blob"));
+        if (contains(id)) {
+            return id;
+        }
+
+        Path target = pathFor(id);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "tmp_obj_", null);
+        try {
+            try (OutputStream out = deflate(Files.newOutputStream(temp))) {
+                long size = Files.size(file);
+                out.write(Hasher.objectHeader("blob", size));
+                if (Files.copy(file, out) != size) {
+                    throw new IOException("File changed while being stored: " + file);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return id;
+    }
+
+    /**
+     * Opens a stream over the content of the object with the given id.
+     * The caller is responsible for closing the returned stream.
+     *
+     * @param id The id of the object.
+     * @return A stream over the object's content, or null if it is not in the store.
+     * @throws IOException If the object exists but could not be opened.
+     */
+    public ObjectStream open(ObjectId id) throws IOException {
+        Path file = pathFor(id);
+        if (!Files.exists(file)) {
+            for (PackReader pack : packs()) {
+                ObjectStream packed = pack.open(id);
+                if (packed != null) {
+                    return packed;
+                }
+            }
+            return null;
+        }
+        InputStream in = new InflaterInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        try {
+            return ObjectStream.readHeader(new BufferedInputStream(in, BUFFER_SIZE));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the content of the object with the given id.
+     *
+     * @param id The id of the object.
+     * @return The content of the object, or null if it is not in the store.
+     * @throws IOException If the object exists but could not be read.
+     */
+    public String read(ObjectId id) throws IOException {
+        try (ObjectStream in = open(id)) {
+            if (in == null) {
+                return null;
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Streams the content of the object with the given id into a file,
+     * replacing the file if it already exists and creating missing parent directories.
+     *
+     * @param id     The id of the object.
+     * @param target The file to write.
+     * @return true if the object was found and written, false if it is not in the store.
+     * @throws IOException If the object could not be read or the file could not be written.
+     */
+    public boolean copyTo(ObjectId id, Path target) throws IOException {
+        try (ObjectStream in = open(id)) {
+            if (in == null) {
+                return false;
+            }
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+    }
+
+    /**
+     * Moves objects into a new pack, storing each version of a file as a delta
+     * against the next newer version of the same file.
+     *
+     * Each history lists the ids of one file's versions from newest to oldest.
+     * The newest version is stored in full so recent checkouts stay cheap, and
+     * older versions form delta chains of at most {@code maxDepth} links. Objects
+     * from existing packs are carried over, after which the old packs and the
+     * packed loose objects are removed.
+     *
+     * @param histories The object ids to pack, grouped per file, newest first.
+     * @param maxDepth  The maximum delta chain length.
+     * @return The number of objects in the new pack.
+     * @throws IOException If the pack could not be written.
+     */
+    public int repack(Collection<List<ObjectId>> histories, int maxDepth) throws IOException {
+        List<PackReader> oldPacks = packs();
+        Path packDir = objectsDir.resolve("pack");
+        Path packFile;
+        int count = 0;
+
+        try (PackWriter writer = new PackWriter(packDir, maxDepth, algorithm)) {
+            for (List<ObjectId> history : histories) {
+                ObjectId baseId = null;
+                byte[] baseData = null;
+                for (ObjectId id : history) {
+                    try (ObjectStream in = open(id)) {
+                        if (in == null) {
+                            continue;
+                        }
+                        byte[] data = in.readAllBytes();
+                        if (!writer.contains(id)) {
+                            if (baseId == null) {
+                                writer.add(id, in.getType(), data);
+                            } else {
+                                writer.add(id, in.getType(), data, baseId, baseData);
+                            }
+                            count++;
+                        }
+                        baseId = id;
+                        baseData = data;
+                    }
+                }
+            }
+
+            for (PackReader pack : oldPacks) {
+                for (ObjectId id : pack.ids()) {
+                    if (!writer.contains(id)) {
+                        PackedObject packed = pack.read(id);
+                        writer.add(id, packed.getType(), packed.getData());
+                        count++;
+                    }
+                }
+            }
+
+            packFile = writer.finish();
+        }
+
+        closePacks();
+        if (packFile != null) {
+            try (Stream<Path> files = Files.list(packDir)) {
+                for (Path file : files.toList()) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".pack") && !file.equals(packFile)) {
+                        Files.deleteIfExists(PackReader.indexFileFor(file));
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+            for (List<ObjectId> history : histories) {
+                for (ObjectId id : history) {
+                    Path loose = pathFor(id);
+                    if (Files.deleteIfExists(loose)) {
+                        try (Stream<Path> rest = Files.list(loose.getParent())) {
+                            if (rest.findAny().isEmpty()) {
+                                Files.delete(loose.getParent());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the readers for all packs, opening them on first use.
+     *
+     * @return The open packs.
+     * @throws IOException If a pack could not be opened.
+     */
+    private synchronized List<PackReader> packs() throws IOException {
+        if (packs == null) {
+            List<PackReader> opened = new ArrayList<>();
+            Path packDir = objectsDir.resolve("pack");
+            if (Files.isDirectory(packDir)) {
+                try (Stream<Path> files = Files.list(packDir)) {
+                    for (Path file : files.toList()) {
+                        if (file.getFileName().toString().endsWith(".pack")) {
+                            opened.add(new PackReader(file, algorithm));
+                        }
+                    }
+                }
+            }
+            packs = opened;
+        }
+        return packs;
+    }
+
+    /**
+     * Closes all open packs so they are rescanned on next use.
+     */
+    private synchronized void closePacks() throws IOException {
+        if (packs != null) {
+            for (PackReader pack : packs) {
+                pack.close();
+            }
+            packs = null;
+        }
+    }
+
+    /**
+     * Wraps a stream so everything written to it is zlib-compressed.
+     *
+     * @param out The stream to wrap.
+     * @return The compressing stream.
+     */
+    static OutputStream deflate(OutputStream out) {
+        return new BufferedOutputStream(new DeflaterOutputStream(out), BUFFER_SIZE);
+    }
+
+    /**
+     * Resolves the on-disk location of an object.
+     *
+     * @param id The id of the object.
+     * @return The path of the loose object file.
+     */
+    private Path pathFor(ObjectId id) {
+        String name = id.name();
+        return objectsDir.resolve(name.substring(0, 2)).resolve(name.substring(2));
+    }
+}
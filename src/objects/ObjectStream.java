@@ -0,0 +1,74 @@
+package objects;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream over the content of a stored object.
+ *
+ * The {@code "<type> <size>\0"} header has already been consumed when the
+ * stream is handed out, so reading from it yields exactly the object's
+ * content bytes. The type and size from the header are exposed so callers can
+ * validate the object without materializing it.
+ */
+public class ObjectStream extends FilterInputStream {
+    private final String type;
+    private final long size;
+
+    /**
+     * Creates a stream positioned at the start of an object's content.
+     *
+     * @param in   The underlying (already inflated) stream.
+     * @param type The object type read from the header.
+     * @param size The content size in bytes read from the header.
+     */
+    public ObjectStream(InputStream in, String type, long size) {
+        super(in);
+        this.type = type;
+        this.size = size;
+    }
+
+    /**
+     * Reads the {@code "<type> <size>\0"} header from an inflated object stream.
+     *
+     * @param in The inflated stream, positioned at the start of the header.
+     * @return A stream positioned at the start of the content.
+     * @throws IOException If the header is missing or malformed.
+     */
+    static ObjectStream readHeader(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int b;
+        while ((b = in.read()) > 0) {
+            header.append((char) b);
+        }
+        int space = header.indexOf(" ");
+        if (b != 0 || space < 0) {
+            throw new IOException("Corrupt object header: " + header);
+        }
+        try {
+            long size = Long.parseLong(header.substring(space + 1));
+            return new ObjectStream(in, header.substring(0, space), size);
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt object size: " + header, e);
+        }
+    }
+
+    /**
+     * Returns the type of the object.
+     *
+     * @return The type (e.g., "blob", "tree", "commit").
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the size of the object's content.
+     *
+     * @return The content size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+}
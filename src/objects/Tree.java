@@ -0,0 +1,201 @@
+package objects;
+
+import utils.HashAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Represents a Tree object in a Git-like implementation.
+ * A Tree lists the contents of one directory: for every entry its mode, name
+ * and the id of the blob or subtree it refers to.
+ *
+ * Entries are kept in git's order (by name, with subtree names compared as if
+ * they ended in {@code /}), so the same directory always produces the same
+ * tree id, and a directory that did not change between two commits is the
+ * very same object in both. The content is one line per entry in the form
+ * {@code <mode> <type> <id>\t<name>}, like the output of {@code git ls-tree}.
+ */
+public class Tree extends Object {
+    /** Mode of an entry that refers to a subtree. */
+    public static final int MODE_TREE = 040000;
+
+    private static final Comparator<Entry> GIT_ORDER = Tree::compareNames;
+
+    private final List<Entry> entries;
+
+    /**
+     * Creates a Tree object from the given entries.
+     *
+     * @param algorithm The hash algorithm used to compute the tree's id.
+     * @param entries   The entries of the directory, in any order.
+     */
+    public Tree(HashAlgorithm algorithm, Collection<Entry> entries) {
+        this(algorithm, sorted(entries));
+    }
+
+    private Tree(HashAlgorithm algorithm, List<Entry> sortedEntries) {
+        super(algorithm, "tree", buildContent(sortedEntries));
+        this.entries = Collections.unmodifiableList(sortedEntries);
+    }
+
+    private Tree(ObjectId id, String content, List<Entry> entries) {
+        super("tree", content, id);
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Parses the content of a stored tree object. The tree keeps the id it was
+     * read by instead of hashing its content again, so reading a tree costs no
+     * more than splitting its lines.
+     *
+     * @param id      The id the tree was read by.
+     * @param content The content of the tree object, whose entries are in git order.
+     * @return The tree.
+     * @throws IllegalArgumentException If the content is not a valid tree.
+     */
+    public static Tree parse(ObjectId id, String content) {
+        List<Entry> entries = new ArrayList<>();
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                end = content.length();
+            }
+            int space1 = content.indexOf(' ', start);
+            int space2 = content.indexOf(' ', space1 + 1);
+            int tab = content.indexOf('\t', space2 + 1);
+            if (space1 < 0 || space2 < 0 || tab < 0 || tab > end) {
+                throw new IllegalArgumentException("Invalid tree entry: " + content.substring(start, end));
+            }
+            int mode = Integer.parseInt(content, start, space1, 8);
+            ObjectId entryId = ObjectId.fromHex(content.substring(space2 + 1, tab));
+            entries.add(new Entry(mode, content.substring(tab + 1, end), entryId));
+            start = end + 1;
+        }
+        return new Tree(id, content, entries);
+    }
+
+    /**
+     * Returns the entries of the tree in git order.
+     *
+     * @return An unmodifiable list of the entries.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    private static List<Entry> sorted(Collection<Entry> entries) {
+        List<Entry> list = new ArrayList<>(entries);
+        list.sort(GIT_ORDER);
+        return list;
+    }
+
+    /**
+     * Helper method to construct the content of a tree object.
+     *
+     * @param entries The sorted entries.
+     * @return The formatted content for the tree.
+     */
+    private static String buildContent(List<Entry> entries) {
+        StringBuilder contentBuilder = new StringBuilder(entries.size() * 64);
+        for (Entry entry : entries) {
+            String mode = Integer.toOctalString(entry.mode);
+            contentBuilder.append("0".repeat(Math.max(0, 6 - mode.length()))).append(mode)
+                    .append(' ').append(entry.isTree() ? "tree" : "blob")
+                    .append(' ').append(entry.id.name())
+                    .append('\t').append(entry.name).append('\n');
+        }
+        return contentBuilder.toString();
+    }
+
+    /**
+     * Compares entry names the way git does: as if subtree names ended in {@code /}.
+     * This is the order of the entries of every tree.
+     *
+     * @param a The first entry.
+     * @param b The second entry.
+     * @return A negative number, zero or a positive number as {@code a} sorts before, with or after {@code b}.
+     */
+    public static int compareNames(Entry a, Entry b) {
+        int length = Math.min(a.name.length(), b.name.length());
+        for (int i = 0; i < length; i++) {
+            int cmp = Character.compare(a.name.charAt(i), b.name.charAt(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        char nextA = a.name.length() > length ? a.name.charAt(length) : (a.isTree() ? '/' : '\0');
+        char nextB = b.name.length() > length ? b.name.charAt(length) : (b.isTree() ? '/' : '\0');
+        return Character.compare(nextA, nextB);
+    }
+
+    @Override
+    public String toString() {
+        return "Tree{" +
+                "id='" + getId() + '\'' +
+                ", entries=" + entries.size() +
+                '}';
+    }
+
+    /**
+     * A single entry of a tree: a file or a subdirectory.
+     */
+    public static final class Entry {
+        private final int mode;
+        private final String name;
+        private final ObjectId id;
+
+        /**
+         * Creates a tree entry.
+         *
+         * @param mode The mode of the entry, e.g. {@code 0100644} or {@link #MODE_TREE}.
+         * @param name The name of the file or directory, without any {@code /}.
+         * @param id   The id of the blob or subtree.
+         */
+        public Entry(int mode, String name, ObjectId id) {
+            this.mode = mode;
+            this.name = name;
+            this.id = id;
+        }
+
+        /**
+         * Returns the mode of the entry.
+         *
+         * @return The mode.
+         */
+        public int getMode() {
+            return mode;
+        }
+
+        /**
+         * Returns the name of the entry.
+         *
+         * @return The file or directory name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the id of the object the entry refers to.
+         *
+         * @return The blob or subtree id.
+         */
+        public ObjectId getId() {
+            return id;
+        }
+
+        /**
+         * Checks whether the entry refers to a subtree.
+         *
+         * @return true for subdirectories, false for files.
+         */
+        public boolean isTree() {
+            return mode == MODE_TREE;
+        }
+    }
+}
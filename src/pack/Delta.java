@@ -0,0 +1,207 @@
+package pack;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Creates and applies binary deltas in the copy/insert format used by git packs.
+ *
+ * A delta starts with the size of the base and the size of the result, each
+ * encoded as a little-endian base-128 varint, followed by a sequence of
+ * instructions:
+ * - Copy (high bit set): copy a range of bytes from the base. The low seven
+ *   bits say which offset and size bytes follow.
+ * - Insert (1-127): append the next n literal bytes from the delta.
+ */
+public class Delta {
+    private static final int BLOCK = 16;
+    private static final int MAX_COPY = 0x10000;
+    private static final int MAX_INSERT = 0x7f;
+
+    private Delta() {
+    }
+
+    /**
+     * Computes a delta that rebuilds {@code target} from {@code base}.
+     *
+     * The base is indexed in fixed-size blocks; the target is then scanned for
+     * runs that match an indexed block, which are extended in both directions
+     * and emitted as copy instructions. Everything else becomes insert
+     * instructions.
+     *
+     * @param base   The base content.
+     * @param target The content to encode.
+     * @return The encoded delta.
+     */
+    public static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(target.length / 4 + 16);
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(blockHash(base, i), i);
+        }
+
+        int literalStart = 0;
+        int i = 0;
+        while (i + BLOCK <= target.length) {
+            Integer match = blocks.get(blockHash(target, i));
+            if (match == null || !regionEquals(base, match, target, i, BLOCK)) {
+                i++;
+                continue;
+            }
+
+            int baseStart = match;
+            int targetStart = i;
+            while (targetStart > literalStart && baseStart > 0
+                    && base[baseStart - 1] == target[targetStart - 1]) {
+                baseStart--;
+                targetStart--;
+            }
+            int length = i - targetStart + BLOCK;
+            while (baseStart + length < base.length && targetStart + length < target.length
+                    && base[baseStart + length] == target[targetStart + length]) {
+                length++;
+            }
+
+            writeInsert(out, target, literalStart, targetStart);
+            writeCopy(out, baseStart, length);
+            i = targetStart + length;
+            literalStart = i;
+        }
+        writeInsert(out, target, literalStart, target.length);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Rebuilds the target content by applying a delta to its base.
+     *
+     * @param base  The base content.
+     * @param delta The delta created against that base.
+     * @return The reconstructed content.
+     * @throws IllegalArgumentException If the delta is malformed or does not match the base.
+     */
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        long baseSize = readVarint(delta, pos);
+        long resultSize = readVarint(delta, pos);
+        if (baseSize != base.length) {
+            throw new IllegalArgumentException("Delta base size mismatch: expected " + baseSize + ", got " + base.length);
+        }
+
+        byte[] result = new byte[(int) resultSize];
+        int written = 0;
+        int p = pos[0];
+        while (p < delta.length) {
+            int op = delta[p++] & 0xff;
+            if ((op & 0x80) != 0) {
+                int offset = 0;
+                int size = 0;
+                for (int b = 0; b < 4; b++) {
+                    if ((op & (1 << b)) != 0) {
+                        offset |= (delta[p++] & 0xff) << (8 * b);
+                    }
+                }
+                for (int b = 0; b < 3; b++) {
+                    if ((op & (0x10 << b)) != 0) {
+                        size |= (delta[p++] & 0xff) << (8 * b);
+                    }
+                }
+                if (size == 0) {
+                    size = MAX_COPY;
+                }
+                System.arraycopy(base, offset, result, written, size);
+                written += size;
+            } else if (op != 0) {
+                System.arraycopy(delta, p, result, written, op);
+                p += op;
+                written += op;
+            } else {
+                throw new IllegalArgumentException("Invalid delta instruction 0");
+            }
+        }
+
+        if (written != result.length) {
+            throw new IllegalArgumentException("Delta produced " + written + " bytes, expected " + result.length);
+        }
+        return result;
+    }
+
+    /**
+     * Emits insert instructions for {@code data[from, to)}.
+     */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] data, int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(data, from, n);
+            from += n;
+        }
+    }
+
+    /**
+     * Emits copy instructions for {@code length} bytes of the base starting at {@code offset}.
+     */
+    private static void writeCopy(ByteArrayOutputStream out, int offset, int length) {
+        while (length > 0) {
+            int n = Math.min(MAX_COPY, length);
+            int op = 0x80;
+            byte[] args = new byte[7];
+            int count = 0;
+            for (int b = 0; b < 4; b++) {
+                int v = (offset >>> (8 * b)) & 0xff;
+                if (v != 0) {
+                    op |= 1 << b;
+                    args[count++] = (byte) v;
+                }
+            }
+            int size = n == MAX_COPY ? 0 : n;
+            for (int b = 0; b < 3; b++) {
+                int v = (size >>> (8 * b)) & 0xff;
+                if (v != 0) {
+                    op |= 0x10 << b;
+                    args[count++] = (byte) v;
+                }
+            }
+            out.write(op);
+            out.write(args, 0, count);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[pos[0]++] & 0xff;
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int blockHash(byte[] data, int offset) {
+        int h = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            h = 31 * h + data[offset + i];
+        }
+        return h;
+    }
+
+    private static boolean regionEquals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return Arrays.equals(a, aOffset, aOffset + length, b, bOffset, bOffset + length);
+    }
+}
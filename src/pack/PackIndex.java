@@ -0,0 +1,272 @@
+package pack;
+
+import objects.ObjectId;
+import utils.HashAlgorithm;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory-mapped index of the objects in a pack.
+ *
+ * The file uses git's version 2 {@code .idx} layout:
+ * - an 8-byte header ({@code \377tOc} and the version),
+ * - a 256-entry fan-out table where entry {@code i} counts the objects whose
+ *   first id byte is at most {@code i},
+ * - the sorted object ids (20 bytes for SHA-1, 32 for SHA-256),
+ * - a CRC32 per object, a 4-byte offset per object and an optional table of
+ *   8-byte offsets for packs larger than 2 GiB,
+ * - the pack checksum and the checksum of the index itself.
+ *
+ * As in git, the id width is not recorded in the file; it follows from the
+ * repository's hash algorithm.
+ *
+ * The file is mapped rather than read, so opening an index costs the same no
+ * matter how many objects it holds, and a lookup is a fan-out read followed by
+ * a binary search comparing the mapped ids word by word without allocating.
+ */
+public class PackIndex {
+    private static final int MAGIC = 0xff744f63;
+    private static final int VERSION = 2;
+    private static final int FANOUT_OFFSET = 8;
+    private static final int IDS_OFFSET = FANOUT_OFFSET + 256 * 4;
+    private static final long LARGE_OFFSET_FLAG = 0x80000000L;
+
+    private final int idLength;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int offsetsOffset;
+    private final int largeOffsetsOffset;
+
+    /**
+     * Maps an index file.
+     *
+     * @param indexFile The {@code .idx} file.
+     * @param algorithm The hash algorithm of the repository.
+     * @throws IOException If the file could not be mapped or is not a version 2 index.
+     */
+    public PackIndex(Path indexFile, HashAlgorithm algorithm) throws IOException {
+        this.idLength = algorithm.getRawLength();
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < IDS_OFFSET || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported pack index: " + indexFile);
+        }
+        this.count = buffer.getInt(FANOUT_OFFSET + 255 * 4);
+        this.offsetsOffset = IDS_OFFSET + count * (idLength + 4);
+        this.largeOffsetsOffset = offsetsOffset + count * 4;
+    }
+
+    /**
+     * Returns the number of objects in the index.
+     *
+     * @return The object count.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the id of the object at a position in sorted order.
+     *
+     * @param position The position, between 0 and {@link #size()} - 1.
+     * @return The object id.
+     */
+    public ObjectId idAt(int position) {
+        byte[] raw = new byte[idLength];
+        buffer.get(IDS_OFFSET + position * idLength, raw);
+        return ObjectId.fromRaw(raw);
+    }
+
+    /**
+     * Looks up the pack offset of an object.
+     *
+     * @param id The object id.
+     * @return The offset of the object in the pack, or -1 if it is not indexed.
+     */
+    public long findOffset(ObjectId id) {
+        if (id.rawLength() != idLength) {
+            return -1;
+        }
+        int first = id.firstByte();
+        int low = first == 0 ? 0 : buffer.getInt(FANOUT_OFFSET + (first - 1) * 4);
+        int high = buffer.getInt(FANOUT_OFFSET + first * 4) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return offsetAt(mid);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the objects whose ids start with a hexadecimal prefix.
+     * The first matching position is found by binary search within the fan-out
+     * range, after which matches are contiguous.
+     *
+     * @param prefix A lowercase hexadecimal prefix of at least two characters.
+     * @return The matching ids in sorted order.
+     */
+    public List<ObjectId> findByPrefix(String prefix) {
+        List<ObjectId> matches = new ArrayList<>();
+        if (prefix.length() > idLength * 2) {
+            return matches;
+        }
+        ObjectId lowest = ObjectId.fromHex(prefix + "0".repeat(idLength * 2 - prefix.length()));
+        int first = lowest.firstByte();
+        int low = first == 0 ? 0 : buffer.getInt(FANOUT_OFFSET + (first - 1) * 4);
+        int high = buffer.getInt(FANOUT_OFFSET + first * 4);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, lowest) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < count; i++) {
+            ObjectId id = idAt(i);
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            matches.add(id);
+        }
+        return matches;
+    }
+
+    /**
+     * Compares the id at a position with the given id, word by word.
+     */
+    private int compare(int position, ObjectId id) {
+        int base = IDS_OFFSET + position * idLength;
+        for (int i = 0; i < idLength / 4; i++) {
+            int cmp = Integer.compareUnsigned(buffer.getInt(base + i * 4), id.word(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the pack offset stored for a position.
+     */
+    private long offsetAt(int position) {
+        long offset = buffer.getInt(offsetsOffset + position * 4) & 0xffffffffL;
+        if ((offset & LARGE_OFFSET_FLAG) != 0) {
+            return buffer.getLong(largeOffsetsOffset + (int) (offset & ~LARGE_OFFSET_FLAG) * 8);
+        }
+        return offset;
+    }
+
+    /**
+     * Writes an index for a pack.
+     *
+     * @param indexFile    The {@code .idx} file to write.
+     * @param entries      The pack entries, sorted by id.
+     * @param packChecksum The checksum trailer of the pack.
+     * @param algorithm    The hash algorithm of the repository.
+     * @throws IOException If the index could not be written.
+     */
+    public static void write(Path indexFile, List<Entry> entries, byte[] packChecksum, HashAlgorithm algorithm)
+            throws IOException {
+        Path temp = Files.createTempFile(indexFile.getParent(), "tmp_idx_", null);
+        try {
+            MessageDigest digest = algorithm.newDigest();
+            DigestOutputStream digestOut = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 65536), digest);
+            try (DataOutputStream out = new DataOutputStream(digestOut)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                int[] fanout = new int[256];
+                for (Entry entry : entries) {
+                    fanout[entry.id.firstByte()]++;
+                }
+                int total = 0;
+                for (int i = 0; i < 256; i++) {
+                    total += fanout[i];
+                    out.writeInt(total);
+                }
+
+                byte[] raw = new byte[algorithm.getRawLength()];
+                for (Entry entry : entries) {
+                    entry.id.copyRawTo(raw, 0);
+                    out.write(raw);
+                }
+                for (Entry entry : entries) {
+                    out.writeInt(entry.crc);
+                }
+                int large = 0;
+                for (Entry entry : entries) {
+                    if (entry.offset >= LARGE_OFFSET_FLAG) {
+                        out.writeInt((int) (LARGE_OFFSET_FLAG | large++));
+                    } else {
+                        out.writeInt((int) entry.offset);
+                    }
+                }
+                for (Entry entry : entries) {
+                    if (entry.offset >= LARGE_OFFSET_FLAG) {
+                        out.writeLong(entry.offset);
+                    }
+                }
+                out.write(packChecksum);
+                digestOut.on(false);
+                out.write(digest.digest());
+            }
+            Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * A single object recorded in an index.
+     */
+    public static class Entry {
+        private final ObjectId id;
+        private final long offset;
+        private final int crc;
+
+        /**
+         * Creates an index entry.
+         *
+         * @param id     The object id.
+         * @param offset The offset of the object in the pack.
+         * @param crc    The CRC32 of the object's packed bytes.
+         */
+        public Entry(ObjectId id, long offset, int crc) {
+            this.id = id;
+            this.offset = offset;
+            this.crc = crc;
+        }
+
+        /**
+         * Returns the object id.
+         *
+         * @return The id.
+         */
+        public ObjectId getId() {
+            return id;
+        }
+    }
+}
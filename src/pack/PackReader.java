@@ -0,0 +1,265 @@
+package pack;
+
+import objects.ObjectId;
+import objects.ObjectStream;
+import utils.HashAlgorithm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads objects from a pack file written by {@link PackWriter}.
+ *
+ * Objects are located through the pack's index and delta chains are resolved
+ * recursively against their bases, so callers always receive full content.
+ * An object stored whole can also be streamed, inflating it from the pack as
+ * it is read instead of holding it in memory.
+ */
+public class PackReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path packFile;
+    private final FileChannel channel;
+    private final PackIndex index;
+
+    /**
+     * Opens a pack and maps its index.
+     *
+     * @param packFile  The {@code .pack} file; its {@code .idx} file must sit next to it.
+     * @param algorithm The hash algorithm of the repository.
+     * @throws IOException If the pack or its index could not be opened.
+     */
+    public PackReader(Path packFile, HashAlgorithm algorithm) throws IOException {
+        this.packFile = packFile;
+        this.index = new PackIndex(indexFileFor(packFile), algorithm);
+        this.channel = FileChannel.open(packFile, StandardOpenOption.READ);
+    }
+
+    /**
+     * Returns the index file belonging to a pack.
+     *
+     * @param packFile The {@code .pack} file.
+     * @return The matching {@code .idx} file.
+     */
+    public static Path indexFileFor(Path packFile) {
+        String name = packFile.getFileName().toString();
+        return packFile.resolveSibling(name.substring(0, name.length() - ".pack".length()) + ".idx");
+    }
+
+    /**
+     * Checks whether the pack contains an object.
+     *
+     * @param id The id of the object.
+     * @return true if the object is in this pack.
+     */
+    public boolean contains(ObjectId id) {
+        return index.findOffset(id) >= 0;
+    }
+
+    /**
+     * Finds the objects in this pack whose ids start with a hexadecimal prefix.
+     *
+     * @param prefix A lowercase hexadecimal prefix of at least two characters.
+     * @return The matching ids in sorted order.
+     */
+    public List<ObjectId> findByPrefix(String prefix) {
+        return index.findByPrefix(prefix);
+    }
+
+    /**
+     * Returns the ids of all objects in this pack.
+     *
+     * @return The object ids in sorted order.
+     */
+    public List<ObjectId> ids() {
+        List<ObjectId> ids = new ArrayList<>(index.size());
+        for (int i = 0; i < index.size(); i++) {
+            ids.add(index.idAt(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Reads an object from the pack, resolving its delta chain if necessary.
+     *
+     * @param id The id of the object.
+     * @return The object, or null if it is not in this pack.
+     * @throws IOException If the pack could not be read or is corrupt.
+     */
+    public PackedObject read(ObjectId id) throws IOException {
+        long offset = index.findOffset(id);
+        if (offset < 0) {
+            return null;
+        }
+        return readAt(offset);
+    }
+
+    /**
+     * Opens a stream over the content of an object. An object stored whole is
+     * inflated from the pack as the stream is read; a delta is resolved in
+     * memory first, since applying it needs all of its base.
+     *
+     * @param id The id of the object.
+     * @return A stream over the object's content, or null if it is not in this pack.
+     * @throws IOException If the pack could not be read or is corrupt.
+     */
+    public ObjectStream open(ObjectId id) throws IOException {
+        long offset = index.findOffset(id);
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer header = readHeader(offset);
+        int b = header.get(0) & 0xff;
+        int type = (b >> 4) & 0x07;
+        if (type == PackWriter.OBJ_OFS_DELTA) {
+            PackedObject packed = readAt(offset);
+            return new ObjectStream(new ByteArrayInputStream(packed.getData()), packed.getType(), packed.getData().length);
+        }
+        long size = entrySize(header);
+        InputStream in = new InflaterInputStream(
+                new BufferedInputStream(new EntryInputStream(offset + header.position()), BUFFER_SIZE));
+        return new ObjectStream(in, PackWriter.typeName(type), size);
+    }
+
+    /**
+     * Reads the start of the entry at the given offset, enough for its header.
+     */
+    private ByteBuffer readHeader(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(32);
+        channel.read(header, offset);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Parses the type and size byte(s) at the start of an entry's header,
+     * leaving the buffer positioned after them.
+     *
+     * @return The size of the entry's inflated data.
+     */
+    private static long entrySize(ByteBuffer header) {
+        int b = header.get() & 0xff;
+        long size = b & 0x0f;
+        int shift = 4;
+        while ((b & 0x80) != 0) {
+            b = header.get() & 0xff;
+            size |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the entry starting at the given offset.
+     */
+    private PackedObject readAt(long offset) throws IOException {
+        ByteBuffer header = readHeader(offset);
+        int type = (header.get(0) >> 4) & 0x07;
+        long size = entrySize(header);
+
+        long baseOffset = -1;
+        if (type == PackWriter.OBJ_OFS_DELTA) {
+            int b = header.get() & 0xff;
+            long distance = b & 0x7f;
+            while ((b & 0x80) != 0) {
+                b = header.get() & 0xff;
+                distance = ((distance + 1) << 7) | (b & 0x7f);
+            }
+            baseOffset = offset - distance;
+        }
+
+        byte[] data = inflate(offset + header.position(), size);
+        if (baseOffset < 0) {
+            return new PackedObject(PackWriter.typeName(type), data);
+        }
+
+        PackedObject base = readAt(baseOffset);
+        try {
+            return new PackedObject(base.getType(), Delta.apply(base.getData(), data));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt delta at offset " + offset + " in " + packFile, e);
+        }
+    }
+
+    /**
+     * Inflates {@code size} bytes of zlib data starting at the given offset.
+     * The pack is read with positional reads only, so several threads can
+     * inflate objects from the same pack at once.
+     */
+    private byte[] inflate(long position, long size) throws IOException {
+        byte[] data = new byte[(int) size];
+        ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        long next = position;
+        Inflater inflater = new Inflater();
+        try {
+            int produced = 0;
+            while (produced < data.length) {
+                if (inflater.needsInput()) {
+                    input.clear();
+                    int read = channel.read(input, next);
+                    if (read <= 0) {
+                        break;
+                    }
+                    next += read;
+                    inflater.setInput(input.array(), 0, read);
+                }
+                int inflated = inflater.inflate(data, produced, data.length - produced);
+                if (inflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+                produced += inflated;
+            }
+            if (produced != data.length) {
+                throw new IOException("Truncated entry at offset " + position + " in " + packFile);
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry at offset " + position + " in " + packFile, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The compressed data of one entry, read from the pack with positional
+     * reads so several streams over the same pack can be open at once.
+     */
+    private class EntryInputStream extends InputStream {
+        private long position;
+
+        EntryInputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
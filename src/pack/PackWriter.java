@@ -0,0 +1,296 @@
+package pack;
+
+import objects.ObjectId;
+import utils.HashAlgorithm;
+import utils.Hasher;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes objects into a pack file.
+ *
+ * The layout follows git's version 2 pack format: a {@code PACK} signature,
+ * the version and the object count, then one entry per object and a trailing
+ * checksum of everything before it, computed with the repository's hash algorithm. Each entry starts with a varint
+ * holding its type and uncompressed size and is followed by zlib data. Objects
+ * added with a base are stored as {@code OFS_DELTA} entries pointing back at
+ * the base's offset, as long as the delta is worthwhile and the base's chain
+ * is shorter than the configured maximum depth.
+ *
+ * Next to the pack, a {@link PackIndex} maps every object id to its offset.
+ */
+public class PackWriter implements AutoCloseable {
+    static final int OBJ_COMMIT = 1;
+    static final int OBJ_TREE = 2;
+    static final int OBJ_BLOB = 3;
+    static final int OBJ_TAG = 4;
+    static final int OBJ_OFS_DELTA = 6;
+
+    private static final byte[] SIGNATURE = {'P', 'A', 'C', 'K'};
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+
+    private final Path packDir;
+    private final int maxDepth;
+    private final HashAlgorithm algorithm;
+    private final Path tempFile;
+    private final OutputStream out;
+    private final Deflater deflater;
+    private final Map<ObjectId, Long> offsets;
+    private final Map<ObjectId, Integer> depths;
+    private final Map<ObjectId, Integer> crcs;
+    private final CRC32 crc;
+    private long position;
+    private boolean finished;
+
+    /**
+     * Starts a new pack in the given directory.
+     *
+     * @param packDir   The directory the pack and its index are written to.
+     * @param maxDepth  The maximum length of a delta chain; 0 disables deltas.
+     * @param algorithm The hash algorithm of the repository.
+     * @throws IOException If the pack file could not be created.
+     */
+    public PackWriter(Path packDir, int maxDepth, HashAlgorithm algorithm) throws IOException {
+        this.packDir = packDir;
+        this.maxDepth = maxDepth;
+        this.algorithm = algorithm;
+        Files.createDirectories(packDir);
+        this.tempFile = Files.createTempFile(packDir, "tmp_pack_", null);
+        this.out = new BufferedOutputStream(Files.newOutputStream(tempFile), 65536);
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.offsets = new HashMap<>();
+        this.depths = new HashMap<>();
+        this.crcs = new HashMap<>();
+        this.crc = new CRC32();
+
+        out.write(SIGNATURE);
+        writeInt(VERSION);
+        writeInt(0); // object count, patched in finish()
+        this.position = HEADER_SIZE;
+    }
+
+    /**
+     * Checks whether an object has already been written to this pack.
+     *
+     * @param id   The id of the object.
+     * @return true if the object is in the pack.
+     */
+    public boolean contains(ObjectId id) {
+        return offsets.containsKey(id);
+    }
+
+    /**
+     * Adds an object in full.
+     *
+     * @param id   The id of the object.
+     * @param type The object type.
+     * @param data The content of the object.
+     * @throws IOException If the entry could not be written.
+     */
+    public void add(ObjectId id, String type, byte[] data) throws IOException {
+        if (contains(id)) {
+            return;
+        }
+        offsets.put(id, position);
+        depths.put(id, 0);
+        crcs.put(id, writeEntry(typeCode(type), data.length, null, data));
+    }
+
+    /**
+     * Adds an object as a delta against a base that is already in this pack.
+     * Falls back to storing the object in full if the base is missing, its
+     * chain is already at the maximum depth, or the delta saves too little.
+     *
+     * @param id       The id of the object.
+     * @param type     The object type.
+     * @param data     The content of the object.
+     * @param baseId   The id of the base object.
+     * @param baseData The content of the base object.
+     * @throws IOException If the entry could not be written.
+     */
+    public void add(ObjectId id, String type, byte[] data, ObjectId baseId, byte[] baseData) throws IOException {
+        if (contains(id)) {
+            return;
+        }
+        Integer baseDepth = depths.get(baseId);
+        if (baseDepth == null || baseDepth >= maxDepth) {
+            add(id, type, data);
+            return;
+        }
+
+        byte[] delta = Delta.create(baseData, data);
+        if (delta.length >= data.length / 2) {
+            add(id, type, data);
+            return;
+        }
+
+        long offset = position;
+        offsets.put(id, offset);
+        depths.put(id, baseDepth + 1);
+        crcs.put(id, writeEntry(OBJ_OFS_DELTA, delta.length, offset - offsets.get(baseId), delta));
+    }
+
+    /**
+     * Completes the pack: patches the object count, appends the checksum and
+     * moves the pack and its index into place as {@code pack-<checksum>.pack}
+     * and {@code pack-<checksum>.idx}.
+     *
+     * @return The pack file, or null if no objects were added.
+     * @throws IOException If the pack could not be completed.
+     */
+    public Path finish() throws IOException {
+        finished = true;
+        out.close();
+        deflater.end();
+        if (offsets.isEmpty()) {
+            Files.deleteIfExists(tempFile);
+            return null;
+        }
+
+        byte[] trailer;
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, offsets.size()), 8);
+
+            MessageDigest digest = algorithm.newDigest();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+            channel.position(0);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            trailer = digest.digest();
+            channel.write(ByteBuffer.wrap(trailer));
+        }
+
+        String checksum = Hasher.toHex(trailer);
+        Path packFile = packDir.resolve("pack-" + checksum + ".pack");
+        writeIndex(packDir.resolve("pack-" + checksum + ".idx"), trailer);
+        Files.move(tempFile, packFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return packFile;
+    }
+
+    /**
+     * Discards the pack if {@link #finish()} was never called.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            finished = true;
+            out.close();
+            deflater.end();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Writes the index next to the pack, with entries sorted by object id.
+     *
+     * @param indexFile    The index file to write.
+     * @param packChecksum The checksum trailer of the pack.
+     * @throws IOException If the index could not be written.
+     */
+    private void writeIndex(Path indexFile, byte[] packChecksum) throws IOException {
+        List<PackIndex.Entry> entries = new ArrayList<>(offsets.size());
+        for (var entry : new TreeMap<>(offsets).entrySet()) {
+            entries.add(new PackIndex.Entry(entry.getKey(), entry.getValue(), crcs.get(entry.getKey())));
+        }
+        PackIndex.write(indexFile, entries, packChecksum, algorithm);
+    }
+
+    /**
+     * Writes one pack entry: the type/size header, the base offset for deltas
+     * and the compressed payload.
+     *
+     * @return The CRC32 of the bytes written for the entry.
+     */
+    private int writeEntry(int type, long size, Long baseDistance, byte[] payload) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(16);
+        int b = (type << 4) | (int) (size & 0x0f);
+        size >>>= 4;
+        while (size != 0) {
+            header.write(b | 0x80);
+            b = (int) (size & 0x7f);
+            size >>>= 7;
+        }
+        header.write(b);
+
+        if (baseDistance != null) {
+            byte[] buf = new byte[10];
+            int pos = buf.length - 1;
+            long n = baseDistance;
+            buf[pos] = (byte) (n & 0x7f);
+            while ((n >>>= 7) != 0) {
+                buf[--pos] = (byte) (0x80 | (--n & 0x7f));
+            }
+            header.write(buf, pos, buf.length - pos);
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.length / 2 + 64);
+        deflater.reset();
+        try (DeflaterOutputStream zip = new DeflaterOutputStream(compressed, deflater)) {
+            zip.write(payload);
+        }
+
+        header.writeTo(out);
+        compressed.writeTo(out);
+        position += header.size() + compressed.size();
+
+        crc.reset();
+        crc.update(header.toByteArray());
+        crc.update(compressed.toByteArray());
+        return (int) crc.getValue();
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Maps an object type name to its pack type code.
+     */
+    static int typeCode(String type) {
+        return switch (type) {
+            case "commit" -> OBJ_COMMIT;
+            case "tree" -> OBJ_TREE;
+            case "blob" -> OBJ_BLOB;
+            case "tag" -> OBJ_TAG;
+            default -> throw new IllegalArgumentException("Unknown object type: " + type);
+        };
+    }
+
+    /**
+     * Maps a pack type code back to its object type name.
+     */
+    static String typeName(int code) {
+        return switch (code) {
+            case OBJ_COMMIT -> "commit";
+            case OBJ_TREE -> "tree";
+            case OBJ_BLOB -> "blob";
+            case OBJ_TAG -> "tag";
+            default -> throw new IllegalArgumentException("Unknown pack type code: " + code);
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package pack;
+
+/**
+ * An object read from a pack, with any delta chain already resolved.
+ */
+public class PackedObject {
+    private final String type;
+    private final byte[] data;
+
+    /**
+     * Creates a packed object.
+     *
+     * @param type The object type (e.g., "blob", "tree", "commit").
+     * @param data The full content of the object.
+     */
+    public PackedObject(String type, byte[] data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    /**
+     * Returns the type of the object.
+     *
+     * @return The type (e.g., "blob", "tree", "commit").
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the content of the object.
+     *
+     * @return The content bytes.
+     */
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,162 @@
+package refs;
+
+import objects.ObjectId;
+import utils.HashAlgorithm;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Memory-mapped {@code packed-refs} file.
+ *
+ * The file holds many refs in one place, in the same text format as git:
+ * an optional header line starting with {@code #}, then one line per ref,
+ * {@code <hex id> <name>}, sorted by name. Because the lines are sorted, a
+ * ref is found by binary search over the mapped bytes: each probe backs up to
+ * the start of its line and compares the name there, so a lookup reads a
+ * couple of dozen lines no matter how many refs the file holds. Listing the
+ * refs under a prefix searches for the first one and reads on from there.
+ */
+public final class PackedRefs {
+    /** The header written at the top of the file. */
+    static final String HEADER = "# pack-refs with: sorted\n";
+
+    private final MappedByteBuffer buffer;
+    private final int hexLength;
+    private final int start;
+
+    private PackedRefs(MappedByteBuffer buffer, int hexLength) {
+        this.buffer = buffer;
+        this.hexLength = hexLength;
+        int first = 0;
+        if (buffer.limit() > 0 && buffer.get(0) == '#') {
+            first = lineEnd(0) + 1;
+        }
+        this.start = first;
+    }
+
+    /**
+     * Maps a packed-refs file.
+     *
+     * @param file      The packed-refs file.
+     * @param algorithm The hash algorithm of the repository.
+     * @return The packed refs, or null if the file does not exist.
+     * @throws IOException If the file could not be mapped or is not terminated by a newline.
+     */
+    public static PackedRefs open(Path file, HashAlgorithm algorithm) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() > 0 && buffer.get(buffer.limit() - 1) != '\n') {
+            throw new IOException("Truncated packed-refs: " + file);
+        }
+        return new PackedRefs(buffer, algorithm.getHexLength());
+    }
+
+    /**
+     * Looks up a ref by binary search.
+     *
+     * @param name The full name of the ref, e.g. {@code refs/heads/main}.
+     * @return The id the ref points to, or null if it is not in the file.
+     */
+    public ObjectId find(String name) {
+        int line = lowerBound(name);
+        if (line < buffer.limit() && nameAt(line).equals(name)) {
+            return idAt(line);
+        }
+        return null;
+    }
+
+    /**
+     * Passes every ref whose name starts with a prefix to a consumer, in name order.
+     *
+     * @param prefix   The prefix, e.g. {@code refs/tags/}, or empty for all refs.
+     * @param consumer Receives the name and id of each ref.
+     */
+    public void scan(String prefix, BiConsumer<String, ObjectId> consumer) {
+        for (int line = lowerBound(prefix); line < buffer.limit(); line = lineEnd(line) + 1) {
+            String name = nameAt(line);
+            if (!name.startsWith(prefix)) {
+                break;
+            }
+            consumer.accept(name, idAt(line));
+        }
+    }
+
+    /**
+     * Finds the first line whose name is not less than the given name.
+     *
+     * @return The offset of the line, or the end of the file.
+     */
+    private int lowerBound(String name) {
+        int low = start;
+        int high = buffer.limit();
+        while (low < high) {
+            int line = lineStart(low, (low + high) >>> 1);
+            if (nameAt(line).compareTo(name) < 0) {
+                low = lineEnd(line) + 1;
+            } else {
+                high = line;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Backs up from a position to the start of its line, but not past {@code low},
+     * which is always the start of a line.
+     */
+    private int lineStart(int low, int position) {
+        while (position > low && buffer.get(position - 1) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    private int lineEnd(int line) {
+        int end = line;
+        while (buffer.get(end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    private String nameAt(int line) {
+        int nameStart = line + hexLength + 1;
+        byte[] name = new byte[lineEnd(line) - nameStart];
+        buffer.get(nameStart, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private ObjectId idAt(int line) {
+        byte[] hex = new byte[hexLength];
+        buffer.get(line, hex);
+        return ObjectId.fromHex(new String(hex, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Formats the content of a packed-refs file.
+     *
+     * @param refs The refs to write, sorted by name.
+     * @return The file content.
+     */
+    static byte[] format(SortedMap<String, ObjectId> refs) {
+        StringBuilder content = new StringBuilder(HEADER);
+        for (Map.Entry<String, ObjectId> ref : refs.entrySet()) {
+            content.append(ref.getValue().name()).append(' ').append(ref.getKey()).append('\n');
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
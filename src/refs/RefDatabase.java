@@ -0,0 +1,399 @@
+package refs;
+
+import objects.ObjectId;
+import utils.HashAlgorithm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * The named refs of a repository: {@code HEAD}, branches under
+ * {@code refs/heads/} and tags under {@code refs/tags/}.
+ *
+ * A ref is either a loose file named after it in the {@code .git} directory,
+ * holding the hex id it points to, or a line of the {@code packed-refs} file
+ * (see {@link PackedRefs}); a loose ref hides a packed ref of the same name.
+ * A ref may also be symbolic, holding {@code ref: <name>} to point to another
+ * ref, which is how {@code HEAD} names the current branch.
+ *
+ * Every update takes a lock first by creating {@code <file>.lock}, which fails
+ * if another process holds it, writes the new content to the lock file, and
+ * then renames it over the ref. Readers therefore always see either the old
+ * or the new value. {@link #pack()} moves all loose refs into
+ * {@code packed-refs} the same way, so lookups and listings stay cheap however
+ * many refs there are.
+ */
+public class RefDatabase {
+    /** The prefix of branch names. */
+    public static final String HEADS = "refs/heads/";
+    /** The prefix of tag names. */
+    public static final String TAGS = "refs/tags/";
+
+    private static final String SYMBOLIC_PREFIX = "ref: ";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final int MAX_SYMBOLIC_DEPTH = 5;
+
+    private final Path gitDir;
+    private final HashAlgorithm algorithm;
+    private PackedRefs packedRefs;
+    private boolean packedLoaded;
+
+    /**
+     * Creates the ref database of a repository.
+     *
+     * @param gitDir    The {@code .git} directory.
+     * @param algorithm The hash algorithm of the repository.
+     */
+    public RefDatabase(Path gitDir, HashAlgorithm algorithm) {
+        this.gitDir = gitDir;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Checks whether a string is a valid ref name, following the main rules
+     * of git's {@code check-ref-format}: no empty components, no component
+     * starting with {@code .} or ending with {@code .lock}, no {@code ..}, and
+     * no spaces, control characters or any of {@code ~^:?*[\}.
+     *
+     * @param name The full name, e.g. {@code refs/heads/main}.
+     * @return true if the name can be used for a ref.
+     */
+    public static boolean isValidName(String name) {
+        if (name.isEmpty() || name.equals("@") || name.endsWith(".") || name.contains("..")
+                || name.contains("@{")) {
+            return false;
+        }
+        for (String component : name.split("/", -1)) {
+            if (component.isEmpty() || component.startsWith(".") || component.endsWith(LOCK_SUFFIX)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c <= ' ' || c == 0x7f || "~^:?*[\\".indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves a ref to the id it points to, following symbolic refs.
+     *
+     * @param name The full name of the ref, e.g. {@code HEAD} or {@code refs/tags/v1}.
+     * @return The id, or null if the ref, or the ref it points to, does not exist.
+     * @throws IOException If a ref could not be read or symbolic refs loop.
+     */
+    public ObjectId resolve(String name) throws IOException {
+        for (int depth = 0; depth < MAX_SYMBOLIC_DEPTH; depth++) {
+            String content = readLoose(name);
+            if (content == null) {
+                PackedRefs packed = packedRefs();
+                return packed != null ? packed.find(name) : null;
+            }
+            if (!content.startsWith(SYMBOLIC_PREFIX)) {
+                return parseId(name, content);
+            }
+            name = content.substring(SYMBOLIC_PREFIX.length());
+        }
+        throw new IOException("Too many levels of symbolic refs at " + name);
+    }
+
+    /**
+     * Returns the ref a symbolic ref points to.
+     *
+     * @param name The full name of the ref.
+     * @return The name of the target, or null if the ref is missing or not symbolic.
+     * @throws IOException If the ref could not be read.
+     */
+    public String getTarget(String name) throws IOException {
+        String content = readLoose(name);
+        if (content == null || !content.startsWith(SYMBOLIC_PREFIX)) {
+            return null;
+        }
+        return content.substring(SYMBOLIC_PREFIX.length());
+    }
+
+    /**
+     * Checks whether a ref exists as a loose or packed ref.
+     *
+     * @param name The full name of the ref.
+     * @return true if the ref exists, even if it is symbolic and its target does not.
+     * @throws IOException If the ref could not be read.
+     */
+    public boolean exists(String name) throws IOException {
+        if (readLoose(name) != null) {
+            return true;
+        }
+        PackedRefs packed = packedRefs();
+        return packed != null && packed.find(name) != null;
+    }
+
+    /**
+     * Points a ref at an id, replacing its previous value. A symbolic ref is
+     * overwritten, not followed.
+     *
+     * @param name The full name of the ref.
+     * @param id   The id to point to.
+     * @throws IOException If the ref is locked or could not be written.
+     */
+    public void update(String name, ObjectId id) throws IOException {
+        write(name, id.name() + "\n", false);
+    }
+
+    /**
+     * Creates a ref pointing at an id. Whether the ref exists is checked while
+     * holding its lock, so two processes cannot both create it.
+     *
+     * @param name The full name of the ref.
+     * @param id   The id to point to.
+     * @throws IOException If the ref already exists, is locked or could not be written.
+     */
+    public void create(String name, ObjectId id) throws IOException {
+        write(name, id.name() + "\n", true);
+    }
+
+    /**
+     * Makes a ref symbolic, pointing to another ref.
+     *
+     * @param name   The full name of the symbolic ref, e.g. {@code HEAD}.
+     * @param target The full name of the ref it points to, which need not exist yet.
+     * @throws IOException If the ref is locked or could not be written.
+     */
+    public void link(String name, String target) throws IOException {
+        write(name, SYMBOLIC_PREFIX + target + "\n", false);
+    }
+
+    /**
+     * Deletes a ref, both its loose file and its line in {@code packed-refs}.
+     *
+     * @param name The full name of the ref.
+     * @return true if the ref existed.
+     * @throws IOException If the ref or {@code packed-refs} is locked or could not be rewritten.
+     */
+    public boolean delete(String name) throws IOException {
+        Path file = gitDir.resolve(name);
+        Path lock = lock(file);
+        try {
+            boolean existed = Files.deleteIfExists(file);
+            PackedRefs packed = packedRefs();
+            if (packed != null && packed.find(name) != null) {
+                Path packedFile = gitDir.resolve("packed-refs");
+                Path packedLock = lock(packedFile);
+                try {
+                    SortedMap<String, ObjectId> refs = new TreeMap<>();
+                    packed.scan("", refs::put);
+                    refs.remove(name);
+                    commit(packedLock, packedFile, PackedRefs.format(refs));
+                } finally {
+                    Files.deleteIfExists(packedLock);
+                    invalidatePacked();
+                }
+                existed = true;
+            }
+            pruneEmptyDirectories(file.getParent());
+            return existed;
+        } finally {
+            Files.deleteIfExists(lock);
+        }
+    }
+
+    /**
+     * Lists the refs under a prefix, loose and packed, without following
+     * symbolic refs. Only the directory of the prefix is walked for loose refs,
+     * and only the matching range of {@code packed-refs} is read.
+     *
+     * @param prefix The prefix ending in {@code /}, e.g. {@link #HEADS}.
+     * @return The id of each ref by full name, sorted by name.
+     * @throws IOException If a ref could not be read.
+     */
+    public SortedMap<String, ObjectId> list(String prefix) throws IOException {
+        TreeMap<String, ObjectId> refs = new TreeMap<>();
+        PackedRefs packed = packedRefs();
+        if (packed != null) {
+            packed.scan(prefix, refs::put);
+        }
+        refs.putAll(listLoose(prefix));
+        return refs;
+    }
+
+    /**
+     * Moves every loose ref under {@code refs/} into {@code packed-refs}. A loose
+     * ref is only deleted if it still has the value that was packed.
+     *
+     * @return The number of refs in {@code packed-refs} afterwards.
+     * @throws IOException If {@code packed-refs} is locked or could not be written.
+     */
+    public int pack() throws IOException {
+        Path packedFile = gitDir.resolve("packed-refs");
+        Path packedLock = lock(packedFile);
+        SortedMap<String, ObjectId> loose;
+        SortedMap<String, ObjectId> refs = new TreeMap<>();
+        try {
+            PackedRefs packed = packedRefs();
+            if (packed != null) {
+                packed.scan("", refs::put);
+            }
+            loose = listLoose("refs/");
+            refs.putAll(loose);
+            commit(packedLock, packedFile, PackedRefs.format(refs));
+        } finally {
+            Files.deleteIfExists(packedLock);
+            invalidatePacked();
+        }
+
+        for (Map.Entry<String, ObjectId> ref : loose.entrySet()) {
+            Path file = gitDir.resolve(ref.getKey());
+            Path lock;
+            try {
+                lock = lock(file);
+            } catch (IOException e) {
+                continue;  // being updated; the loose ref stays and still wins over the packed one
+            }
+            try {
+                String content = readLoose(ref.getKey());
+                if (content != null && ref.getValue().equals(parseId(ref.getKey(), content))) {
+                    Files.delete(file);
+                    pruneEmptyDirectories(file.getParent());
+                }
+            } finally {
+                Files.deleteIfExists(lock);
+            }
+        }
+        return refs.size();
+    }
+
+    /**
+     * Lists the loose refs under a prefix that point directly to an id.
+     */
+    private SortedMap<String, ObjectId> listLoose(String prefix) throws IOException {
+        TreeMap<String, ObjectId> refs = new TreeMap<>();
+        Path dir = gitDir.resolve(prefix);
+        if (!Files.isDirectory(dir)) {
+            return refs;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String name = gitDir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                if (name.endsWith(LOCK_SUFFIX)) {
+                    continue;
+                }
+                String content = readLoose(name);
+                if (content != null && !content.startsWith(SYMBOLIC_PREFIX)) {
+                    refs.put(name, parseId(name, content));
+                }
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * Writes a loose ref through its lock file.
+     */
+    private void write(String name, String content, boolean mustNotExist) throws IOException {
+        if (!name.equals("HEAD") && !isValidName(name)) {
+            throw new IOException("Invalid ref name: " + name);
+        }
+        Path file = gitDir.resolve(name);
+        Path lock = lock(file);
+        try {
+            if (mustNotExist && exists(name)) {
+                throw new IOException("Ref already exists: " + name);
+            }
+            commit(lock, file, content.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(lock);
+        }
+    }
+
+    /**
+     * Takes the lock of a file by creating {@code <file>.lock}, along with any
+     * missing parent directories.
+     *
+     * @return The lock file.
+     * @throws IOException If the lock is already held.
+     */
+    private static Path lock(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path lock = file.resolveSibling(file.getFileName() + LOCK_SUFFIX);
+        try {
+            Files.createFile(lock);
+        } catch (FileAlreadyExistsException e) {
+            throw new IOException("Unable to lock " + file.getFileName() + ": " + lock + " exists");
+        }
+        return lock;
+    }
+
+    /**
+     * Writes the new content into a held lock file and renames it over the target.
+     */
+    private static void commit(Path lock, Path file, byte[] content) throws IOException {
+        Files.write(lock, content);
+        Files.move(lock, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Deletes directories under {@code refs/} that a deleted ref left empty.
+     */
+    private void pruneEmptyDirectories(Path dir) throws IOException {
+        Path refsDir = gitDir.resolve("refs");
+        for (; dir != null && dir.startsWith(refsDir) && !dir.equals(refsDir)
+                && !dir.getParent().equals(refsDir); dir = dir.getParent()) {
+            try (Stream<Path> children = Files.list(dir)) {
+                if (children.findAny().isPresent()) {
+                    return;
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Reads a loose ref file.
+     *
+     * @return The trimmed content, or null if there is no loose ref of that name.
+     */
+    private String readLoose(String name) throws IOException {
+        Path file = gitDir.resolve(name);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return Files.readString(file).trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private ObjectId parseId(String name, String content) throws IOException {
+        if (!ObjectId.isHex(content) || content.length() != algorithm.getHexLength()) {
+            throw new IOException("Invalid ref " + name + ": " + content);
+        }
+        return ObjectId.fromHex(content);
+    }
+
+    /**
+     * Returns the packed refs, mapping the file on first use.
+     */
+    private PackedRefs packedRefs() throws IOException {
+        if (!packedLoaded) {
+            packedRefs = PackedRefs.open(gitDir.resolve("packed-refs"), algorithm);
+            packedLoaded = true;
+        }
+        return packedRefs;
+    }
+
+    private void invalidatePacked() {
+        packedRefs = null;
+        packedLoaded = false;
+    }
+}
@@ -0,0 +1,129 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the repository config file ({@code .git/config}).
+ *
+ * The file uses git's INI-like syntax: {@code [section]} headers followed by
+ * {@code key = value} lines. Section and key names are case-insensitive and
+ * are stored lowercased; comments and blank lines are ignored and not
+ * preserved when the file is saved.
+ */
+public class Config {
+    private final Path file;
+    private final Map<String, Map<String, String>> sections;
+
+    private Config(Path file) {
+        this.file = file;
+        this.sections = new LinkedHashMap<>();
+    }
+
+    /**
+     * Loads a config file. A missing file yields an empty config.
+     *
+     * @param file The config file.
+     * @return The parsed config.
+     */
+    public static Config load(Path file) {
+        Config config = new Config(file);
+        if (!Files.exists(file)) {
+            return config;
+        }
+        try {
+            String section = "";
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
+                    continue;
+                }
+                if (line.startsWith("[") && line.endsWith("]")) {
+                    section = line.substring(1, line.length() - 1).trim().toLowerCase();
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                String key = (eq < 0 ? line : line.substring(0, eq)).trim().toLowerCase();
+                String value = eq < 0 ? "true" : line.substring(eq + 1).trim();
+                config.sections.computeIfAbsent(section, _ -> new LinkedHashMap<>()).put(key, value);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading config: " + e.getMessage());
+        }
+        return config;
+    }
+
+    /**
+     * Returns a config value.
+     *
+     * @param section      The section name.
+     * @param key          The key within the section.
+     * @param defaultValue The value to return if the key is not set.
+     * @return The configured value, or {@code defaultValue}.
+     */
+    public String get(String section, String key, String defaultValue) {
+        Map<String, String> values = sections.get(section.toLowerCase());
+        if (values == null) {
+            return defaultValue;
+        }
+        return values.getOrDefault(key.toLowerCase(), defaultValue);
+    }
+
+    /**
+     * Returns a config value as an int.
+     *
+     * @param section      The section name.
+     * @param key          The key within the section.
+     * @param defaultValue The value to return if the key is not set or not a number.
+     * @return The configured value, or {@code defaultValue}.
+     */
+    public int getInt(String section, String key, int defaultValue) {
+        String value = get(section, key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Sets a config value in memory. Call {@link #save()} to persist it.
+     *
+     * @param section The section name.
+     * @param key     The key within the section.
+     * @param value   The value.
+     */
+    public void set(String section, String key, String value) {
+        sections.computeIfAbsent(section.toLowerCase(), _ -> new LinkedHashMap<>()).put(key.toLowerCase(), value);
+    }
+
+    /**
+     * Writes the config back to its file.
+     *
+     * @throws IOException If the file could not be written.
+     */
+    public void save() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (var section : sections.entrySet()) {
+            sb.append('[').append(section.getKey()).append("]\n");
+            for (var entry : section.getValue().entrySet()) {
+                sb.append('\t').append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+            }
+        }
+        Path temp = Files.createTempFile(file.getParent(), "config", ".tmp");
+        try {
+            Files.writeString(temp, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
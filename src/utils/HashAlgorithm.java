@@ -0,0 +1,114 @@
+package utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The hash functions a repository can use to name its objects.
+ *
+ * The algorithm is chosen when a repository is initialized and recorded in its
+ * config as {@code extensions.objectformat}, using the same names as git
+ * ({@code sha1} and {@code sha256}). Everything that stores or parses object
+ * ids takes its width from here rather than assuming 20 bytes.
+ */
+public enum HashAlgorithm {
+    SHA1("sha1", "SHA-1", 20),
+    SHA256("sha256", "SHA-256", 32);
+
+    private final String name;
+    private final String jcaName;
+    private final int rawLength;
+    private final ThreadLocal<MessageDigest> digest;
+
+    HashAlgorithm(String name, String jcaName, int rawLength) {
+        this.name = name;
+        this.jcaName = jcaName;
+        this.rawLength = rawLength;
+        this.digest = ThreadLocal.withInitial(this::newDigest);
+    }
+
+    /**
+     * Looks up an algorithm by its config name.
+     *
+     * @param name The name, e.g. "sha1" or "sha256".
+     * @return The algorithm.
+     * @throws IllegalArgumentException If no algorithm has that name.
+     */
+    public static HashAlgorithm fromName(String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown object format: " + name);
+    }
+
+    /**
+     * Looks up the algorithm that produces digests of the given length.
+     *
+     * @param rawLength The digest length in bytes.
+     * @return The algorithm.
+     * @throws IllegalArgumentException If no algorithm produces digests of that length.
+     */
+    public static HashAlgorithm forRawLength(int rawLength) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.rawLength == rawLength) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("No hash algorithm with " + rawLength + "-byte digests");
+    }
+
+    /**
+     * Returns the name used in the repository config.
+     *
+     * @return The config name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the length of a digest in bytes.
+     *
+     * @return The digest length.
+     */
+    public int getRawLength() {
+        return rawLength;
+    }
+
+    /**
+     * Returns the length of a digest in hexadecimal characters.
+     *
+     * @return The hex length.
+     */
+    public int getHexLength() {
+        return rawLength * 2;
+    }
+
+    /**
+     * Returns this thread's digest for the algorithm, reset and ready for use.
+     * {@link MessageDigest#getInstance} goes through the security provider lookup
+     * on every call, so each thread creates one digest and reuses it.
+     *
+     * @return The digest.
+     */
+    public MessageDigest digest() {
+        MessageDigest md = digest.get();
+        md.reset();
+        return md;
+    }
+
+    /**
+     * Creates a new digest for the algorithm.
+     *
+     * @return The digest.
+     */
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(jcaName);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(jcaName + " algorithm not found", e);
+        }
+    }
+}
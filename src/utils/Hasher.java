@@ -1,17 +1,43 @@
 package utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.nio.charset.StandardCharsets;
 
 /**
  * Utility class for hashing operations.
  *
- * This class provides methods for generating cryptographic hashes, such as SHA-1,
- * which can be used for data integrity verification and unique identifier generation.
+ * This class provides methods for generating cryptographic hashes, such as SHA-1 or
+ * SHA-256 (see {@link HashAlgorithm}), which can be used for data integrity verification and unique identifier generation.
  * It encapsulates common hashing functionality in an easy-to-use interface.
  */
 public class Hasher {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Per-thread direct buffer used to stream files into the digest, so hashing
+     * a file never allocates a copy of its content.
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * Two hex characters for every byte value, so encoding is a table lookup per byte.
+     */
+    private static final char[] HEX_TABLE = new char[512];
+
+    static {
+        char[] digits = "0123456789abcdef".toCharArray();
+        for (int i = 0; i < 256; i++) {
+            HEX_TABLE[2 * i] = digits[i >>> 4];
+            HEX_TABLE[2 * i + 1] = digits[i & 0xf];
+        }
+    }
 
     /**
      * Generates a SHA-1 hash for the given input.
@@ -20,24 +46,165 @@ public class Hasher {
      * @return The hexadecimal representation of the hash.
      */
     public static String computeSHA1(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-1");
-
-            byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    // Pad with a leading zero if necessary
-                    hexString.append('0');
-                }
-                hexString.append(hex);
+        return toHex(digestSHA1(input));
+    }
+
+    /**
+     * Encodes bytes as a lowercase hexadecimal string.
+     *
+     * @param bytes The bytes to encode.
+     * @return The hexadecimal representation.
+     */
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        toHex(bytes, hex, 0);
+        return new String(hex);
+    }
+
+    /**
+     * Encodes bytes as lowercase hexadecimal into a caller-supplied buffer,
+     * so repeated encoding can reuse one array instead of allocating.
+     *
+     * @param bytes  The bytes to encode.
+     * @param dst    The buffer to write to; it needs room for {@code 2 * bytes.length} chars.
+     * @param offset The position in {@code dst} to start writing at.
+     */
+    public static void toHex(byte[] bytes, char[] dst, int offset) {
+        for (byte b : bytes) {
+            int i = (b & 0xff) << 1;
+            dst[offset++] = HEX_TABLE[i];
+            dst[offset++] = HEX_TABLE[i + 1];
+        }
+    }
+
+    /**
+     * Encodes a big-endian int, such as one word of an object id, as eight
+     * lowercase hexadecimal characters.
+     *
+     * @param word   The value to encode.
+     * @param dst    The buffer to write to; it needs room for 8 chars.
+     * @param offset The position in {@code dst} to start writing at.
+     */
+    public static void toHex(int word, char[] dst, int offset) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int i = ((word >>> shift) & 0xff) << 1;
+            dst[offset++] = HEX_TABLE[i];
+            dst[offset++] = HEX_TABLE[i + 1];
+        }
+    }
+
+    /**
+     * Returns the value of a hexadecimal digit. Only the ASCII digits
+     * {@code [0-9a-fA-F]} are accepted, unlike {@link Character#digit}, which
+     * also accepts other Unicode digits such as fullwidth ones.
+     *
+     * @param c The character.
+     * @return The digit's value from 0 to 15, or -1 if it is not a hexadecimal digit.
+     */
+    public static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Generates the raw SHA-1 digest of the given input.
+     *
+     * @param input The string to be hashed; it is encoded as UTF-8.
+     * @return The 20-byte digest.
+     */
+    public static byte[] digestSHA1(String input) {
+        return digest(HashAlgorithm.SHA1, input);
+    }
+
+    /**
+     * Generates the raw digest of the given input.
+     *
+     * @param algorithm The hash algorithm to use.
+     * @param input     The string to be hashed; it is encoded as UTF-8.
+     * @return The digest.
+     */
+    public static byte[] digest(HashAlgorithm algorithm, String input) {
+        return algorithm.digest().digest(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Generates the raw object digest of a file, reading it straight from disk.
+     * The digest covers the {@code "<type> <size>\0"} header followed by the file's bytes,
+     * so the result is the id the file would have as an object of that type.
+     *
+     * @param algorithm The hash algorithm to use.
+     * @param file      The file to hash.
+     * @param type      The object type used in the header (e.g., "blob").
+     * @return The digest.
+     * @throws IOException If the file could not be read or changed size while being hashed.
+     */
+    public static byte[] digest(HashAlgorithm algorithm, Path file, String type) throws IOException {
+        MessageDigest digest = algorithm.digest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            digest.update(objectHeader(type, size));
+
+            ByteBuffer buffer = BUFFER.get();
+            long total = 0;
+            buffer.clear();
+            int n;
+            while ((n = channel.read(buffer)) > 0) {
+                total += n;
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
             }
+            if (total != size) {
+                throw new IOException("File changed while hashing: " + file);
+            }
+        }
+        return digest.digest();
+    }
 
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-1 algorithm not found", e);
+    /**
+     * Generates the raw object digest of a stream of known length.
+     * The digest covers the {@code "<type> <size>\0"} header followed by the stream's bytes.
+     *
+     * @param algorithm The hash algorithm to use.
+     * @param in        The stream to hash; it is read to the end but not closed.
+     * @param type      The object type used in the header (e.g., "blob").
+     * @param size      The number of bytes the stream will deliver.
+     * @return The digest.
+     * @throws IOException If the stream could not be read or did not deliver {@code size} bytes.
+     */
+    public static byte[] digest(HashAlgorithm algorithm, InputStream in, String type, long size) throws IOException {
+        MessageDigest digest = algorithm.digest();
+        digest.update(objectHeader(type, size));
+
+        byte[] chunk = new byte[8192];
+        long total = 0;
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            total += n;
+            digest.update(chunk, 0, n);
+        }
+        if (total != size) {
+            throw new IOException("Expected " + size + " bytes but read " + total);
         }
+        return digest.digest();
+    }
+
+    /**
+     * Builds the {@code "<type> <size>\0"} header that precedes an object's content.
+     *
+     * @param type The object type.
+     * @param size The content size in bytes.
+     * @return The encoded header.
+     */
+    public static byte[] objectHeader(String type, long size) {
+        return (type + " " + size + "\0").getBytes(StandardCharsets.US_ASCII);
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package utils;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Utility class for timing the phases of a command.
+ *
+ * Tracing is off unless the {@code GIT_TRACE_PERFORMANCE} environment variable
+ * is set to {@code 1} or {@code true}, in which case each traced phase prints
+ * one line to standard error, e.g. {@code performance: 1.234 ms: load index}.
+ * When tracing is off, {@link #start()} and {@link #end} cost a field read.
+ */
+public class Trace {
+    private static final boolean ENABLED = isTruthy(System.getenv("GIT_TRACE_PERFORMANCE"));
+
+    /**
+     * Checks whether tracing is enabled.
+     *
+     * @return true if timings are being printed.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Marks the start of a phase.
+     *
+     * @return A timestamp to pass to {@link #end}, or 0 if tracing is disabled.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Marks the end of a phase and prints how long it took.
+     *
+     * @param label A description of the phase.
+     * @param start The value returned by {@link #start()} when the phase began.
+     */
+    public static void end(String label, long start) {
+        if (ENABLED) {
+            print(label, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Prints how long the JVM took to start, from its initialization to the call.
+     * Call it first thing in {@code main}.
+     */
+    public static void startup() {
+        if (ENABLED) {
+            print("JVM startup", ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000L);
+        }
+    }
+
+    private static void print(String label, long nanos) {
+        System.err.printf("performance: %.3f ms: %s%n", nanos / 1_000_000.0, label);
+    }
+
+    private static boolean isTruthy(String value) {
+        return value != null && (value.equals("1") || value.equalsIgnoreCase("true"));
+    }
+}